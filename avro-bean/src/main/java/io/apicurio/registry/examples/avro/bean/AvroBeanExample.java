@@ -21,7 +21,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Properties;
 
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -31,6 +33,7 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
 import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
@@ -64,8 +67,8 @@ public class AvroBeanExample {
     
     private static final String REGISTRY_URL = "http://localhost:8080/api";
     private static final String SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = AvroBeanExample.class.getSimpleName();
-    private static final String SUBJECT_NAME = "Greeting";
+    static final String TOPIC_NAME = AvroBeanExample.class.getSimpleName();
+    static final String SUBJECT_NAME = "Greeting";
 
     
     public static final void main(String [] args) throws Exception {
@@ -76,21 +79,9 @@ public class AvroBeanExample {
         // Create the producer.
         Producer<Object, Object> producer = createKafkaProducer();
         // Produce 5 messages.
-        int producedMessages = 0;
         try {
             System.out.println("Producing (5) messages.");
-            for (int idx = 0; idx < 5; idx++) {
-                GreetingBean greeting = new GreetingBean();
-                greeting.setMessage("Hello (" + producedMessages++ + ")!");
-                greeting.setTime(System.currentTimeMillis());
-                
-                
-                // Send/produce the message on the Kafka Producer
-                ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, greeting);
-                producer.send(producedRecord);
-                
-                Thread.sleep(100);
-            }
+            produceMessages(producer, topicName, subjectName, 5, 100);
             System.out.println("Messages successfully produced.");
         } finally {
             System.out.println("Closing the producer.");
@@ -104,24 +95,15 @@ public class AvroBeanExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
         // Consume the 5 messages.
         try {
-            int messageCount = 0;
             System.out.println("Consuming (5) messages.");
-            while (messageCount < 5) {
-                final ConsumerRecords<Long, GreetingBean> records = consumer.poll(Duration.ofSeconds(1));
-                messageCount += records.count();
-                if (records.count() == 0) {
-                    // Do nothing - no messages waiting.
-                    System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
-                    GreetingBean greeting = record.value();
-                    System.out.println("Consumed a message: " + greeting.getMessage() + " @ " + new Date(greeting.getTime()));
-                });
-            }
+            consumeMessages(consumer, commits, 5, true);
         } finally {
+            commits.close();
             consumer.close();
         }
         
@@ -129,10 +111,63 @@ public class AvroBeanExample {
         System.exit(0);
     }
 
+    /**
+     * Produces the given number of messages, pausing between each of them.  The producer can be a
+     * Kafka producer or a mock one (see the {@code AvroBeanThroughputCheck}).
+     */
+    static void produceMessages(Producer<Object, Object> producer, String topicName, String subjectName, int count, long pauseMillis) throws InterruptedException {
+        for (int idx = 0; idx < count; idx++) {
+            GreetingBean greeting = new GreetingBean();
+            greeting.setMessage("Hello (" + idx + ")!");
+            greeting.setTime(System.currentTimeMillis());
+            
+            // Send/produce the message on the Kafka Producer
+            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, greeting);
+            producer.send(producedRecord);
+            
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, printing them if asked to, and commits their offsets once processed.
+     */
+    static void consumeMessages(Consumer<Long, GreetingBean> consumer, OffsetCommitManager commits, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, GreetingBean> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            messageCount += records.count();
+            if (print && records.count() == 0) {
+                // Do nothing - no messages waiting.
+                System.out.println("No messages waiting...");
+            }
+            for (ConsumerRecord<Long, GreetingBean> record : records) {
+                if (print) {
+                    GreetingBean greeting = record.value();
+                    System.out.println("Consumed a message: " + greeting.getMessage() + " @ " + new Date(greeting.getTime()));
+                }
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
     /**
      * Creates the Kafka producer.
      */
     private static Producer<Object, Object> createKafkaProducer() {
+        // Create the Kafka producer
+        Producer<Object, Object> producer = new KafkaProducer<>(createProducerConfig(REGISTRY_URL));
+        return producer;
+    }
+
+    /**
+     * Creates the Kafka producer configuration, for the given registry.
+     */
+    static Properties createProducerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure kafka settings
@@ -144,7 +179,7 @@ public class AvroBeanExample {
         props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroKafkaSerializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, SimpleTopicIdStrategy.class.getName());
         // Get an existing schema or auto-register if not found
@@ -152,38 +187,43 @@ public class AvroBeanExample {
         // Use Java reflection as the Avro Datum Provider - this also generates an Avro schema from the java bean
         props.putIfAbsent(AvroDatumProvider.REGISTRY_AVRO_DATUM_PROVIDER_CONFIG_PARAM, ReflectAvroDatumProvider.class.getName());
 
-        // Create the Kafka producer
-        Producer<Object, Object> producer = new KafkaProducer<>(props);
-        return producer;
+        return props;
     }
 
     /**
      * Creates the Kafka consumer.
      */
     private static KafkaConsumer<Long, GreetingBean> createKafkaConsumer() {
+        // Create the Kafka Consumer
+        KafkaConsumer<Long, GreetingBean> consumer = new KafkaConsumer<>(createConsumerConfig(REGISTRY_URL));
+        return consumer;
+    }
+
+    /**
+     * Creates the Kafka consumer configuration, for the given registry.
+     */
+    static Properties createConsumerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         // Use the Apicurio Registry provided Kafka Deserializer for Avro
         props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroKafkaDeserializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Use Java reflection as the Avro Datum Provider
         props.putIfAbsent(AvroDatumProvider.REGISTRY_AVRO_DATUM_PROVIDER_CONFIG_PARAM, ReflectAvroDatumProvider.class.getName());
         // No other configuration needed for the deserializer, because the globalId of the schema
         // the deserializer should use is sent as part of the payload.  So the deserializer simply
         // extracts that globalId and uses it to look up the Schema from the registry.
 
-        // Create the Kafka Consumer
-        KafkaConsumer<Long, GreetingBean> consumer = new KafkaConsumer<>(props);
-        return consumer;
+        return props;
     }
 
 }
@@ -24,7 +24,9 @@ import java.util.Properties;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -34,6 +36,7 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
@@ -64,8 +67,8 @@ public class ConfluentSerdesExample {
     
     private static final String REGISTRY_URL = "http://localhost:8080/api";
     private static final String SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = ConfluentSerdesExample.class.getSimpleName();
-    private static final String SUBJECT_NAME = "Greeting";
+    static final String TOPIC_NAME = ConfluentSerdesExample.class.getSimpleName();
+    static final String SUBJECT_NAME = "Greeting";
     private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
 
     
@@ -77,24 +80,9 @@ public class ConfluentSerdesExample {
         // Create the producer.
         Producer<Object, Object> producer = createKafkaProducer();
         // Produce 5 messages.
-        int producedMessages = 0;
         try {
-            Schema schema = new Schema.Parser().parse(SCHEMA);
             System.out.println("Producing (5) messages.");
-            for (int idx = 0; idx < 5; idx++) {
-                // Use the schema to create a record
-                GenericRecord record = new GenericData.Record(schema);
-                Date now = new Date();
-                String message = "Hello (" + producedMessages++ + ")!";
-                record.put("Message", message);
-                record.put("Time", now.getTime());
-                
-                // Send/produce the message on the Kafka Producer
-                ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, record);
-                producer.send(producedRecord);
-                
-                Thread.sleep(100);
-            }
+            produceMessages(producer, topicName, subjectName, 5, 100);
             System.out.println("Messages successfully produced.");
         } finally {
             System.out.println("Closing the producer.");
@@ -108,24 +96,15 @@ public class ConfluentSerdesExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
         // Consume the 5 messages.
         try {
-            int messageCount = 0;
             System.out.println("Consuming (5) messages.");
-            while (messageCount < 5) {
-                final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
-                messageCount += records.count();
-                if (records.count() == 0) {
-                    // Do nothing - no messages waiting.
-                    System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
-                    GenericRecord value = record.value();
-                    System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
-                });
-            }
+            consumeMessages(consumer, commits, 5, true);
         } finally {
+            commits.close();
             consumer.close();
         }
         
@@ -133,10 +112,67 @@ public class ConfluentSerdesExample {
         System.exit(0);
     }
 
+    /**
+     * Produces the given number of messages, pausing between each of them.  The producer can be a
+     * Kafka producer or a mock one (see the {@code ConfluentSerdesThroughputCheck}).
+     */
+    static void produceMessages(Producer<Object, Object> producer, String topicName, String subjectName, int count, long pauseMillis) throws InterruptedException {
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+        for (int idx = 0; idx < count; idx++) {
+            // Use the schema to create a record
+            GenericRecord record = new GenericData.Record(schema);
+            Date now = new Date();
+            String message = "Hello (" + idx + ")!";
+            record.put("Message", message);
+            record.put("Time", now.getTime());
+            
+            // Send/produce the message on the Kafka Producer
+            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, record);
+            producer.send(producedRecord);
+            
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, printing them if asked to, and commits their offsets once processed.
+     */
+    static void consumeMessages(Consumer<Long, GenericRecord> consumer, OffsetCommitManager commits, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            messageCount += records.count();
+            if (print && records.count() == 0) {
+                // Do nothing - no messages waiting.
+                System.out.println("No messages waiting...");
+            }
+            for (ConsumerRecord<Long, GenericRecord> record : records) {
+                if (print) {
+                    GenericRecord value = record.value();
+                    System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
+                }
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
     /**
      * Creates the Kafka producer.
      */
     private static Producer<Object, Object> createKafkaProducer() {
+        // Create the Kafka producer
+        Producer<Object, Object> producer = new KafkaProducer<>(createProducerConfig(REGISTRY_URL));
+        return producer;
+    }
+
+    /**
+     * Creates the Kafka producer configuration, for the given registry.
+     */
+    static Properties createProducerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure kafka settings
@@ -147,43 +183,48 @@ public class ConfluentSerdesExample {
         // Use the Confluent provided Kafka Serializer for Avro
         props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class.getName());
         // Configure Service Registry location (Confluent API)
-        props.put("schema.registry.url", REGISTRY_URL + "/ccompat");
+        props.put("schema.registry.url", registryUrl + "/ccompat");
         props.put("auto.register.schemas", "true");
         // Map the topic name to the artifactId in the registry
         props.put("value.subject.name.strategy", "io.confluent.kafka.serializers.subject.TopicRecordNameStrategy");
 
-        // Create the Kafka producer
-        Producer<Object, Object> producer = new KafkaProducer<>(props);
-        return producer;
+        return props;
     }
 
     /**
      * Creates the Kafka consumer.
      */
     private static KafkaConsumer<Long, GenericRecord> createKafkaConsumer() {
+        // Create the Kafka Consumer
+        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(createConsumerConfig(REGISTRY_URL));
+        return consumer;
+    }
+
+    /**
+     * Creates the Kafka consumer configuration, for the given registry.
+     */
+    static Properties createConsumerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         // Use the Apicurio Registry provided Kafka Deserializer for Avro
         props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroKafkaDeserializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Enable "Confluent Compatible API" mode in the Apicurio Registry deserializer
         props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_CONFLUENT_ID_HANDLER_CONFIG_PARAM, "true");
         // No other configuration needed for the deserializer, because the globalId of the schema
         // the deserializer should use is sent as part of the payload.  So the deserializer simply
         // extracts that globalId and uses it to look up the Schema from the registry.
 
-        // Create the Kafka Consumer
-        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(props);
-        return consumer;
+        return props;
     }
 
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.confluent.serdes;
+
+import java.util.Collections;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.support.EmbeddedRegistry;
+import io.apicurio.registry.examples.support.InProcessPipe;
+import io.apicurio.registry.examples.support.ThroughputCheck;
+
+/**
+ * Offline throughput check of the {@link ConfluentSerdesExample}: its produce and consume flows run over an
+ * {@link InProcessPipe} against an {@link EmbeddedRegistry}, no Kafka broker or registry is needed.
+ * <p>
+ * Usage: ConfluentSerdesThroughputCheck [records] [minRecordsPerSecond], exits with 1 when the throughput is below the minimum.
+ * Run by the build with the "perf" profile.
+ */
+public class ConfluentSerdesThroughputCheck {
+
+    public static final void main(String [] args) throws Exception {
+        ThroughputCheck check = new ThroughputCheck(ConfluentSerdesExample.class.getSimpleName(), args);
+        boolean passed;
+        try (EmbeddedRegistry registry = new EmbeddedRegistry().start()) {
+            InProcessPipe pipe = new InProcessPipe(10000);
+            Producer<Object, Object> producer = pipe.producer(ConfluentSerdesExample.createProducerConfig(registry.getUrl()));
+            Consumer<Long, GenericRecord> consumer = pipe.consumer(ConfluentSerdesExample.createConsumerConfig(registry.getUrl()));
+            OffsetCommitManager commits = new OffsetCommitManager(consumer);
+            consumer.subscribe(Collections.singletonList(ConfluentSerdesExample.TOPIC_NAME), commits);
+            try {
+                passed = check.run(pipe,
+                        () -> ConfluentSerdesExample.produceMessages(producer, ConfluentSerdesExample.TOPIC_NAME, ConfluentSerdesExample.SUBJECT_NAME, check.getRecords(), 0),
+                        () -> ConfluentSerdesExample.consumeMessages(consumer, commits, check.getRecords(), false));
+            } finally {
+                producer.close();
+                commits.close();
+                consumer.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+}
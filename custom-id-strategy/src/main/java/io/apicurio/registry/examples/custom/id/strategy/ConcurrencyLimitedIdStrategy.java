@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.custom.id.strategy;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.examples.util.AdaptiveConcurrencyLimiter;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+
+/**
+ * A global id strategy that sends the registry calls of another strategy (by default the
+ * {@link CustomGlobalIdStrategy} of this example) through a JVM wide {@link AdaptiveConcurrencyLimiter},
+ * so that a fleet of producers restarting together does not flood the registry with lookups.  Used by
+ * the {@link CustomGlobalIdStrategyExample}, any strategy (e.g. the {@link GetOrCreateIdStrategy}) can be
+ * limited with {@link #ConcurrencyLimitedIdStrategy(GlobalIdStrategy)}.
+ * <p>
+ * The limiter is shared by every producer of the JVM and can be inspected with {@link #getLimiter()}.
+ */
+@SuppressWarnings("deprecation")
+public class ConcurrencyLimitedIdStrategy<T> implements GlobalIdStrategy<T> {
+
+    private static final AdaptiveConcurrencyLimiter LIMITER = new AdaptiveConcurrencyLimiter();
+
+    private final GlobalIdStrategy<T> delegate;
+
+    private volatile RegistryService[] services = new RegistryService[2];
+
+    public ConcurrencyLimitedIdStrategy() {
+        this(new CustomGlobalIdStrategy<>());
+    }
+
+    public ConcurrencyLimitedIdStrategy(GlobalIdStrategy<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @see io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy#findId(io.apicurio.registry.client.RegistryService, java.lang.String, io.apicurio.registry.types.ArtifactType, java.lang.Object)
+     */
+    @Override
+    public long findId(RegistryService service, String artifactId, ArtifactType artifactType, T t) {
+        return delegate.findId(limited(service), artifactId, artifactType, t);
+    }
+
+    private RegistryService limited(RegistryService service) {
+        // The serializer always passes the same service, so the proxy is only created once.
+        RegistryService[] current = services;
+        if (current[0] != service) {
+            current = new RegistryService[]{service, LIMITER.wrap(RegistryService.class, service)};
+            services = current;
+        }
+        return current[1];
+    }
+
+    /**
+     * @return the limiter shared by all the instances of this strategy, to export its limit and rejected count
+     */
+    public static AdaptiveConcurrencyLimiter getLimiter() {
+        return LIMITER;
+    }
+
+}
@@ -28,7 +28,8 @@ import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
 
 /**
  * A custom global id strategy that simply uses the Avro schema found in the {@link Config}
- * class - and ensures that the schema exists in the registry.
+ * class - and ensures that the schema exists in the registry.  Every lookup emits a
+ * {@link SerdeEvents.SchemaLookup} Flight Recorder event.
  * @author eric.wittmann@gmail.com
  */
 @SuppressWarnings("deprecation")
@@ -39,6 +40,25 @@ public class CustomGlobalIdStrategy<T> implements GlobalIdStrategy<T> {
      */
     @Override
     public long findId(RegistryService service, String artifactId, ArtifactType artifactType, T t) {
+        if (!SerdeEvents.SCHEMA_LOOKUP.isEnabled()) {
+            return lookup(service, artifactId);
+        }
+        SerdeEvents.SchemaLookup event = new SerdeEvents.SchemaLookup();
+        event.begin();
+        try {
+            long globalId = lookup(service, artifactId);
+            event.globalId = globalId;
+            return globalId;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.artifactId = artifactId;
+                event.commit();
+            }
+        }
+    }
+
+    private static long lookup(RegistryService service, String artifactId) {
         try {
             String schema = Config.SCHEMA;
             ByteArrayInputStream schemaContent = new ByteArrayInputStream(schema.getBytes(StandardCharsets.UTF_8));
@@ -25,6 +25,7 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -34,10 +35,9 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
-import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
-import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
 import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
 
 /**
@@ -48,7 +48,9 @@ import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
  *   <li>Configuring a Kafka Serializer for use with Apicurio Registry</li>
  *   <li>Configuring a Kafka Deserializer for use with Apicurio Registry</li>
  *   <li>Register the Avro schema in the registry using a custom Global Id Strategy</li>
+ *   <li>Limit the concurrency of the registry calls of the strategy (see {@link ConcurrencyLimitedIdStrategy})</li>
  *   <li>Data sent as a simple GenericRecord, no java beans needed</li>
+ *   <li>Flight Recorder events for the schema lookup, serialize, send and deserialize stages (see {@link SerdeEvents})</li>
  * </ol>
  * 
  * Pre-requisites:
@@ -85,11 +87,31 @@ public class CustomGlobalIdStrategyExample {
                 
                 // Send/produce the message on the Kafka Producer
                 ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, record);
-                producer.send(producedRecord);
+                if (SerdeEvents.SEND.isEnabled()) {
+                    SerdeEvents.Send event = new SerdeEvents.Send();
+                    event.begin();
+                    producer.send(producedRecord, (metadata, error) -> {
+                        // Acknowledged by the broker (or failed), on the producer I/O thread.
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.topic = topicName;
+                            event.failed = error != null;
+                            if (metadata != null) {
+                                event.partition = metadata.partition();
+                                event.offset = metadata.offset();
+                                event.bytes = metadata.serializedValueSize();
+                            }
+                            event.commit();
+                        }
+                    });
+                } else {
+                    producer.send(producedRecord);
+                }
                 
                 Thread.sleep(100);
             }
             System.out.println("Messages successfully produced.");
+            System.out.println(ConcurrencyLimitedIdStrategy.getLimiter());
         } finally {
             System.out.println("Closing the producer.");
             producer.flush();
@@ -102,7 +124,8 @@ public class CustomGlobalIdStrategyExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
         // Consume the 5 messages.
         try {
@@ -110,16 +133,20 @@ public class CustomGlobalIdStrategyExample {
             System.out.println("Consuming (5) messages.");
             while (messageCount < 5) {
                 final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
+                commits.track(records);
                 messageCount += records.count();
                 if (records.count() == 0) {
                     // Do nothing - no messages waiting.
                     System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
+                } else for (ConsumerRecord<Long, GenericRecord> record : records) {
                     GenericRecord value = record.value();
                     System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
-                });
+                    commits.completed(record);
+                }
+                commits.maybeCommit();
             }
         } finally {
+            commits.close();
             consumer.close();
         }
         
@@ -138,15 +165,15 @@ public class CustomGlobalIdStrategyExample {
         props.putIfAbsent(ProducerConfig.CLIENT_ID_CONFIG, "Producer-" + Config.TOPIC_NAME);
         props.putIfAbsent(ProducerConfig.ACKS_CONFIG, "all");
         props.putIfAbsent(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        // Use the Apicurio Registry provided Kafka Serializer for Avro
-        props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroKafkaSerializer.class.getName());
+        // Use the Apicurio Registry provided Kafka Serializer for Avro, reporting to Flight Recorder
+        props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TracingAvroSerializer.class.getName());
 
         // Configure Service Registry location
         props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, Config.REGISTRY_URL);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, SimpleTopicIdStrategy.class.getName());
-        // Use our custom global id strategy here.
-        props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CustomGlobalIdStrategy.class.getName());
+        // Use our custom global id strategy here, its registry calls going through an adaptive concurrency limiter.
+        props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, ConcurrencyLimitedIdStrategy.class.getName());
 
         // Create the Kafka producer
         Producer<Object, Object> producer = new KafkaProducer<>(props);
@@ -162,12 +189,12 @@ public class CustomGlobalIdStrategyExample {
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, Config.SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + Config.TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        // Use the Apicurio Registry provided Kafka Deserializer for Avro
-        props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroKafkaDeserializer.class.getName());
+        // Use the Apicurio Registry provided Kafka Deserializer for Avro, reporting to Flight Recorder
+        props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, TracingAvroDeserializer.class.getName());
 
         // Configure Service Registry location
         props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, Config.REGISTRY_URL);
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.custom.id.strategy;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events of the stages of a record: schema lookup, serialization, send and deserialization.  With
+ * the {@code io.apicurio.registry.RegistryCall} events of the registry client, a recording shows where the time of
+ * a slow send goes, e.g. {@code java -XX:StartFlightRecording=filename=serdes.jfr ...}.
+ * <p>
+ * The callers check the type of an event before creating it, e.g. {@code SerdeEvents.SEND.isEnabled()}, so that
+ * nothing is allocated on the hot path while no recording has the event enabled.  Flight Recorder needs Java 11, or
+ * Java 8u262 and later.
+ */
+public final class SerdeEvents {
+
+    private static final String CATEGORY = "Apicurio Registry";
+
+    static final EventType SCHEMA_LOOKUP = EventType.getEventType(SchemaLookup.class);
+    static final EventType SERIALIZE = EventType.getEventType(Serialize.class);
+    static final EventType SEND = EventType.getEventType(Send.class);
+    static final EventType DESERIALIZE = EventType.getEventType(Deserialize.class);
+
+    private SerdeEvents() {
+    }
+
+    /**
+     * The global id strategy resolving the global id of a schema.
+     */
+    @Name("io.apicurio.registry.SchemaLookup")
+    @Label("Schema Lookup")
+    @Category({CATEGORY, "Serdes"})
+    @Description("Global id strategy lookup")
+    @StackTrace(false)
+    public static class SchemaLookup extends Event {
+
+        @Label("Artifact Id")
+        String artifactId;
+
+        @Label("Global Id")
+        long globalId = -1;
+    }
+
+    /**
+     * The Avro encoding of a record (including the schema lookup).
+     */
+    @Name("io.apicurio.registry.Serialize")
+    @Label("Serialize")
+    @Category({CATEGORY, "Serdes"})
+    @StackTrace(false)
+    public static class Serialize extends Event {
+
+        @Label("Topic")
+        String topic;
+
+        @Label("Artifact Id")
+        String artifactId;
+
+        @Label("Global Id")
+        long globalId = -1;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+    }
+
+    /**
+     * A record from the producer send to its acknowledgement by the broker.
+     */
+    @Name("io.apicurio.registry.Send")
+    @Label("Send")
+    @Category({CATEGORY, "Producer"})
+    @StackTrace(false)
+    public static class Send extends Event {
+
+        @Label("Topic")
+        String topic;
+
+        @Label("Partition")
+        int partition = -1;
+
+        @Label("Offset")
+        long offset = -1;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /**
+     * The Avro decoding of a record (including the schema fetch of a new global id).
+     */
+    @Name("io.apicurio.registry.Deserialize")
+    @Label("Deserialize")
+    @Category({CATEGORY, "Serdes"})
+    @StackTrace(false)
+    public static class Deserialize extends Event {
+
+        @Label("Topic")
+        String topic;
+
+        @Label("Global Id")
+        long globalId = -1;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+    }
+
+    /**
+     * @return the global id of a payload written by the Apicurio serializers, -1 if there is none
+     */
+    static long globalId(byte[] payload) {
+        if (payload == null || payload.length < 1 + Long.BYTES || payload[0] != 0) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 1; i <= Long.BYTES; i++) {
+            id = (id << 8) | (payload[i] & 0xff);
+        }
+        return id;
+    }
+
+}
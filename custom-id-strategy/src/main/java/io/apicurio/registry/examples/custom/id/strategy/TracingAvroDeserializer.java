@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.custom.id.strategy;
+
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
+
+/**
+ * An {@link AvroKafkaDeserializer} emitting a {@link SerdeEvents.Deserialize} event for every record.
+ */
+public class TracingAvroDeserializer<T> implements Deserializer<T> {
+
+    private final AvroKafkaDeserializer<T> delegate = new AvroKafkaDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (!SerdeEvents.DESERIALIZE.isEnabled()) {
+            return delegate.deserialize(topic, data);
+        }
+        SerdeEvents.Deserialize event = new SerdeEvents.Deserialize();
+        event.begin();
+        T value = delegate.deserialize(topic, data);
+        commit(event, topic, data);
+        return value;
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        if (!SerdeEvents.DESERIALIZE.isEnabled()) {
+            return delegate.deserialize(topic, headers, data);
+        }
+        SerdeEvents.Deserialize event = new SerdeEvents.Deserialize();
+        event.begin();
+        T value = delegate.deserialize(topic, headers, data);
+        commit(event, topic, data);
+        return value;
+    }
+
+    private static void commit(SerdeEvents.Deserialize event, String topic, byte[] data) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.globalId = SerdeEvents.globalId(data);
+            event.bytes = data == null ? 0 : data.length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.custom.id.strategy;
+
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+
+/**
+ * An {@link AvroKafkaSerializer} emitting a {@link SerdeEvents.Serialize} event for every record.
+ */
+public class TracingAvroSerializer<T> implements Serializer<T> {
+
+    private final Delegate<T> delegate = new Delegate<>();
+    private boolean isKey;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+        this.isKey = isKey;
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (!SerdeEvents.SERIALIZE.isEnabled()) {
+            return delegate.serialize(topic, data);
+        }
+        SerdeEvents.Serialize event = new SerdeEvents.Serialize();
+        event.begin();
+        byte[] bytes = delegate.serialize(topic, data);
+        commit(event, topic, data, bytes);
+        return bytes;
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (!SerdeEvents.SERIALIZE.isEnabled()) {
+            return delegate.serialize(topic, headers, data);
+        }
+        SerdeEvents.Serialize event = new SerdeEvents.Serialize();
+        event.begin();
+        byte[] bytes = delegate.serialize(topic, headers, data);
+        commit(event, topic, data, bytes);
+        return bytes;
+    }
+
+    private void commit(SerdeEvents.Serialize event, String topic, T data, byte[] bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.artifactId = data == null ? null : delegate.artifactId(topic, isKey, data);
+            event.globalId = SerdeEvents.globalId(bytes);
+            event.bytes = bytes == null ? 0 : bytes.length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Exposes the artifact id of a record, as resolved by the configured artifact id strategy.
+     */
+    private static final class Delegate<T> extends AvroKafkaSerializer<T> {
+
+        private String artifactId(String topic, boolean isKey, T data) {
+            final Schema schema = toSchema(data);
+            return getArtifactIdStrategy().artifactId(topic, isKey, schema);
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Groups the elements of a publisher into batches of up to {@code batchSize} elements, e.g. to process or commit
+ * consumed records a batch at a time.
+ * <p>
+ * Demand is translated, not buffered: the outstanding upstream demand is topped up to the elements needed by the
+ * outstanding downstream batches ({@code demand * batchSize}, less the pending elements), never beyond.  The demand
+ * left over by a partial batch counts towards the next ones, so the elements held by the processor are bounded by
+ * the outstanding downstream demand.  A partial
+ * batch is emitted once its oldest element has waited {@code linger}, when the upstream is slower than the
+ * batches, and when the upstream completes.  Batches are emitted on the upstream thread, or on a shared timer
+ * thread when they linger.
+ */
+public class BatchProcessor<T> implements Processor<T, List<T>> {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "batch-processor-linger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int batchSize;
+    private final long lingerNanos;
+
+    // Guarded by the lock.
+    private final Object lock = new Object();
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private long oldestNanos;
+    private long demand;
+    private long upstreamDemand;
+    private long deferredUpstreamDemand;
+    private Subscription upstream;
+    private Subscriber<? super List<T>> downstream;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean cancelled;
+    private boolean terminated;
+    private boolean emitting;
+    private ScheduledFuture<?> lingerTask;
+
+    /**
+     * @param batchSize max number of elements per batch
+     * @param linger max time an element waits for its batch to fill up, 0 to wait for full batches
+     * @param unit unit of the linger time
+     */
+    public BatchProcessor(int batchSize, long linger, TimeUnit unit) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.lingerNanos = unit.toNanos(linger);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        final long request;
+        synchronized (lock) {
+            if (upstream != null || cancelled) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            request = deferredUpstreamDemand;
+            deferredUpstreamDemand = 0;
+        }
+        if (request > 0) {
+            subscription.request(request);
+        }
+    }
+
+    @Override
+    public void onNext(T element) {
+        Objects.requireNonNull(element, "element");
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            if (pending.isEmpty()) {
+                oldestNanos = System.nanoTime();
+            }
+            pending.add(element);
+            if (upstreamDemand != Long.MAX_VALUE && upstreamDemand > 0) {
+                upstreamDemand--;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        Objects.requireNonNull(error, "error");
+        synchronized (lock) {
+            upstreamDone = true;
+            upstreamError = error;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super List<T>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        synchronized (lock) {
+            if (downstream == null) {
+                downstream = subscriber;
+            } else {
+                subscriber.onSubscribe(Reactive.CANCELLED);
+                subscriber.onError(new IllegalStateException("BatchProcessor allows a single subscriber"));
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                requestBatches(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelBatches();
+            }
+        });
+        // The upstream may have failed or completed before the subscription.
+        drain();
+    }
+
+    private void requestBatches(long n) {
+        if (n <= 0) {
+            onError(new IllegalArgumentException("Requested " + n + " batches, must be positive"));
+            cancelUpstream();
+            return;
+        }
+        final Subscription subscription;
+        final long request;
+        synchronized (lock) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            request = topUpUpstreamDemand();
+            subscription = upstream;
+            if (subscription == null) {
+                deferredUpstreamDemand = deferredUpstreamDemand + request < 0 ? Long.MAX_VALUE : deferredUpstreamDemand + request;
+            }
+        }
+        if (subscription != null && request > 0) {
+            subscription.request(request);
+        }
+        drain();
+    }
+
+    /**
+     * Raises the outstanding upstream demand to the elements needed by the outstanding batches, net of the pending
+     * elements.  Called with the lock held.
+     *
+     * @return the number of elements to request upstream, 0 if the outstanding upstream demand is enough
+     */
+    private long topUpUpstreamDemand() {
+        final long needed = demand == Long.MAX_VALUE ? Long.MAX_VALUE : Reactive.multiplyDemand(demand, batchSize) - pending.size();
+        if (upstreamDemand == Long.MAX_VALUE || needed <= upstreamDemand) {
+            return 0;
+        }
+        final long request = needed == Long.MAX_VALUE ? Long.MAX_VALUE : needed - upstreamDemand;
+        upstreamDemand = needed;
+        return request;
+    }
+
+    private void cancelBatches() {
+        synchronized (lock) {
+            cancelled = true;
+            pending.clear();
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+        }
+        cancelUpstream();
+    }
+
+    private void cancelUpstream() {
+        final Subscription subscription;
+        synchronized (lock) {
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Emits the batches that are ready, one thread at a time: a thread finding another one emitting leaves its
+     * changes to it, as the emitting thread checks the state again after every batch.
+     */
+    private void drain() {
+        synchronized (lock) {
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+        }
+        while (true) {
+            final Subscriber<? super List<T>> subscriber;
+            List<T> batch = null;
+            Throwable error = null;
+            boolean complete = false;
+            synchronized (lock) {
+                subscriber = downstream;
+                if (subscriber != null && !cancelled && !terminated) {
+                    if (upstreamError != null) {
+                        terminated = true;
+                        error = upstreamError;
+                        pending.clear();
+                    } else if (demand > 0 && !pending.isEmpty() && (pending.size() >= batchSize || upstreamDone || lingered())) {
+                        batch = nextBatch();
+                    } else if (upstreamDone && pending.isEmpty()) {
+                        terminated = true;
+                        complete = true;
+                    }
+                }
+                if (batch == null && error == null && !complete) {
+                    emitting = false;
+                    scheduleLinger();
+                    return;
+                }
+            }
+            if (batch != null) {
+                subscriber.onNext(batch);
+            } else if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    private List<T> nextBatch() {
+        final List<T> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        while (batch.size() < batchSize && !pending.isEmpty()) {
+            batch.add(pending.poll());
+        }
+        if (demand != Long.MAX_VALUE) {
+            demand--;
+        }
+        // The elements left are younger than the batch.
+        oldestNanos = System.nanoTime();
+        return batch;
+    }
+
+    private boolean lingered() {
+        return lingerNanos > 0 && System.nanoTime() - oldestNanos >= lingerNanos;
+    }
+
+    private void scheduleLinger() {
+        if (lingerNanos == 0 || lingerTask != null || pending.isEmpty() || demand == 0 || cancelled || terminated) {
+            return;
+        }
+        final long delay = Math.max(0, oldestNanos + lingerNanos - System.nanoTime());
+        lingerTask = TIMER.schedule(() -> {
+            synchronized (lock) {
+                lingerTask = null;
+            }
+            drain();
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+}
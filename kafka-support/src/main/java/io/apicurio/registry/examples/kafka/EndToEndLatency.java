@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Measures the end-to-end latency of consumed records, from the production time they carry (e.g. the "Time" field
+ * of the greetings) to their consumption, per schema and partition.
+ * <p>
+ * Latencies are recorded into HdrHistogram {@link Recorder}s, which are lock-free and do not allocate on the
+ * consumer thread, and a background thread prints the percentiles of the last interval and since the start
+ * periodically.  The producer and consumer clocks must be in sync for the latencies to be meaningful.
+ */
+public class EndToEndLatency implements AutoCloseable {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, Map<Integer, Series>> series = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reporter;
+    private final PrintStream out;
+
+    /**
+     * Prints a report to the standard output every given interval.
+     */
+    public EndToEndLatency(long reportInterval, TimeUnit unit) {
+        this(reportInterval, unit, System.out);
+    }
+
+    public EndToEndLatency(long reportInterval, TimeUnit unit, PrintStream out) {
+        this.out = out;
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "end-to-end-latency-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> report(false), reportInterval, reportInterval, unit);
+    }
+
+    /**
+     * Records the latency of a consumed record.
+     *
+     * @param schema name of the schema of the record
+     * @param producedMillis time the record was produced at, in milliseconds since the epoch
+     */
+    public void record(ConsumerRecord<?, ?> record, String schema, long producedMillis) {
+        record(schema, record.partition(), producedMillis);
+    }
+
+    /**
+     * Records the latency of a consumed record.
+     *
+     * @param schema name of the schema of the record
+     * @param partition partition the record was consumed from
+     * @param producedMillis time the record was produced at, in milliseconds since the epoch
+     */
+    public void record(String schema, int partition, long producedMillis) {
+        // Clock skew can make a latency negative, it is counted as 0.
+        final long latency = Math.max(0, System.currentTimeMillis() - producedMillis);
+        series(schema, partition).recorder.recordValue(latency);
+    }
+
+    private Series series(String schema, int partition) {
+        Map<Integer, Series> partitions = series.get(schema);
+        if (partitions == null) {
+            partitions = series.computeIfAbsent(schema, s -> new ConcurrentHashMap<>());
+        }
+        Series s = partitions.get(partition);
+        if (s == null) {
+            s = partitions.computeIfAbsent(partition, p -> new Series());
+        }
+        return s;
+    }
+
+    /**
+     * Prints the percentiles (in milliseconds) of every schema and partition, for the last interval or since the
+     * start.
+     */
+    public synchronized void report(boolean total) {
+        final StringBuilder report = new StringBuilder(String.format("End-to-end latency (ms) %s:%n%-30s %5s %12s %8s %8s %8s %8s %8s%n",
+                total ? "since start" : "last interval", "schema", "part", "count", "p50", "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<String, Map<Integer, Series>> schema : new TreeMap<>(series).entrySet()) {
+            for (Map.Entry<Integer, Series> partition : new TreeMap<>(schema.getValue()).entrySet()) {
+                final Histogram histogram = partition.getValue().roll(total);
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                report.append(String.format("%-30s %5d %,12d", schema.getKey(), partition.getKey(), histogram.getTotalCount()));
+                for (double percentile : PERCENTILES) {
+                    report.append(String.format(" %8d", histogram.getValueAtPercentile(percentile)));
+                }
+                report.append(String.format(" %8d%n", histogram.getMaxValue()));
+            }
+        }
+        out.print(report);
+    }
+
+    /**
+     * Stops the periodic reports and prints the report since the start.
+     */
+    @Override
+    public void close() {
+        reporter.shutdown();
+        report(true);
+    }
+
+    private static final class Series {
+
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+
+        /**
+         * Moves the latencies recorded since the last call into the total.
+         *
+         * @return the latencies of the interval, or the total
+         */
+        private Histogram roll(boolean returnTotal) {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return returnTotal ? total : interval;
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the elements of an iterator as they are requested, e.g. the records generated by a producer flow.
+ * <p>
+ * The elements are emitted on an executor, never on the thread calling {@link Subscription#request}: a subscriber
+ * requesting more from a Kafka send callback must not end up sending from the producer I/O thread.  As an iterator
+ * can only be consumed once, the publisher accepts a single subscriber.
+ */
+public class IteratorPublisher<T> implements Publisher<T> {
+
+    private static final ExecutorService EMITTERS = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "iterator-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Iterator<? extends T> iterator;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public IteratorPublisher(Iterator<? extends T> iterator) {
+        this(iterator, EMITTERS);
+    }
+
+    public IteratorPublisher(Iterator<? extends T> iterator, Executor executor) {
+        this.iterator = iterator;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(Reactive.CANCELLED);
+            subscriber.onError(new IllegalStateException("IteratorPublisher allows a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Emitter(subscriber));
+    }
+
+    private final class Emitter implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // Number of pending drain requests, the drain runs on the executor while it is above 0.
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        private Emitter(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " elements, must be positive");
+            } else {
+                Reactive.addDemand(requested, n);
+            }
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    return;
+                }
+                if (invalidRequest != null) {
+                    cancelled = true;
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                final long demand = requested.get();
+                long emitted = 0;
+                try {
+                    while (emitted != demand && !cancelled && iterator.hasNext()) {
+                        subscriber.onNext(iterator.next());
+                        emitted++;
+                    }
+                    if (!cancelled && !iterator.hasNext()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
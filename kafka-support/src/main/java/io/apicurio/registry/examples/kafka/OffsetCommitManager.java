@@ -0,0 +1,330 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Commits the offsets of the records once they are processed, in place of the consumer auto-commit (which commits
+ * the offsets of the polled records, processed or not).
+ * <p>
+ * Every partition has a watermark: the offset below which every polled record was processed.  Records can be
+ * processed in parallel and complete out of order, the completions beyond the watermark are kept in a bitset until
+ * the gap below them is filled.  The watermarks are committed asynchronously, in one call for all the partitions,
+ * every {@code commitEvery} completions or {@code commitInterval}, whichever comes first, and synchronously when
+ * partitions are revoked and on {@link #close()}.  A record is thus committed only after it and all the records
+ * before it were processed: delivery is at-least-once, the records in flight during a crash or a rebalance are
+ * redelivered.
+ * <p>
+ * Usage, with {@code enable.auto.commit=false}:
+ * <pre>
+ * OffsetCommitManager commits = new OffsetCommitManager(consumer);
+ * consumer.subscribe(topics, commits);
+ * while (running) {
+ *     ConsumerRecords&lt;K, V&gt; records = consumer.poll(timeout);
+ *     commits.track(records);
+ *     records.forEach(record -&gt; executor.execute(() -&gt; { process(record); commits.completed(record); }));
+ *     commits.maybeCommit();
+ * }
+ * commits.close();
+ * </pre>
+ * {@link #completed} can be called from any thread, the other methods must be called from the polling thread (as
+ * the consumer is not thread-safe).  A record that never completes holds back the watermark of its partition, the
+ * number of records in flight should be bounded (e.g. by pausing the consumer).
+ */
+public class OffsetCommitManager implements ConsumerRebalanceListener, AutoCloseable {
+
+    private final Consumer<?, ?> consumer;
+    private final long commitEvery;
+    private final long commitIntervalNanos;
+
+    private final Map<TopicPartition, ProcessedOffsets> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong completedSinceCommit = new AtomicLong();
+    // Accessed by the polling thread only, commit callbacks run in poll() or commitAsync().
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+    private long lastCommitNanos = System.nanoTime();
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+
+    /**
+     * Commits every 1000 completed records or every second.
+     */
+    public OffsetCommitManager(Consumer<?, ?> consumer) {
+        this(consumer, 1000, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param consumer consumer the offsets are committed with
+     * @param commitEvery number of completed records that triggers a commit
+     * @param commitInterval max time between two commits, while records complete
+     * @param unit unit of the commit interval
+     */
+    public OffsetCommitManager(Consumer<?, ?> consumer, long commitEvery, long commitInterval, TimeUnit unit) {
+        this.consumer = consumer;
+        this.commitEvery = commitEvery;
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+    }
+
+    /**
+     * Registers polled records, before handing them over for processing.
+     */
+    public void track(ConsumerRecords<?, ?> records) {
+        for (TopicPartition partition : records.partitions()) {
+            final List<? extends ConsumerRecord<?, ?>> polled = records.records(partition);
+            partitions.computeIfAbsent(partition, p -> new ProcessedOffsets(polled.get(0).offset())).polled(polled);
+        }
+    }
+
+    /**
+     * Marks a tracked record as processed.  Records of revoked partitions are ignored.
+     */
+    public void completed(ConsumerRecord<?, ?> record) {
+        final ProcessedOffsets offsets = partitions.get(new TopicPartition(record.topic(), record.partition()));
+        if (offsets != null) {
+            offsets.completed(record.offset());
+            completedSinceCommit.incrementAndGet();
+        }
+    }
+
+    /**
+     * Commits the watermarks asynchronously if enough records completed, or enough time elapsed, since the last
+     * commit.  Called from the poll loop.
+     */
+    public void maybeCommit() {
+        final long completed = completedSinceCommit.get();
+        if (completed >= commitEvery || (completed > 0 && System.nanoTime() - lastCommitNanos >= commitIntervalNanos)) {
+            commitAsync();
+        }
+    }
+
+    /**
+     * Commits the watermarks that moved since the last commit, asynchronously.  A failed commit is not retried as
+     * such, its partitions are part of the next commit.
+     */
+    public void commitAsync() {
+        completedSinceCommit.set(0);
+        lastCommitNanos = System.nanoTime();
+        final Map<TopicPartition, OffsetAndMetadata> offsets = watermarks(partitions.keySet());
+        if (offsets.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> offset : offsets.entrySet()) {
+            committed.put(offset.getKey(), offset.getValue().offset());
+        }
+        consumer.commitAsync(offsets, (result, error) -> {
+            if (error == null) {
+                commits.incrementAndGet();
+                return;
+            }
+            failedCommits.incrementAndGet();
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> offset : result.entrySet()) {
+                // Unless a later commit already covers it, the watermark must be committed again.
+                committed.remove(offset.getKey(), offset.getValue().offset());
+            }
+        });
+    }
+
+    /**
+     * Commits the watermarks of the given partitions synchronously.
+     */
+    public void commitSync(Collection<TopicPartition> partitions) {
+        final Map<TopicPartition, OffsetAndMetadata> offsets = watermarks(partitions);
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+            commits.incrementAndGet();
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> offset : offsets.entrySet()) {
+                committed.put(offset.getKey(), offset.getValue().offset());
+            }
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> watermarks(Collection<TopicPartition> selected) {
+        final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : selected) {
+            final ProcessedOffsets processed = partitions.get(partition);
+            if (processed == null) {
+                continue;
+            }
+            final long watermark = processed.watermark();
+            final Long last = committed.get(partition);
+            if (last == null || watermark > last) {
+                offsets.put(partition, new OffsetAndMetadata(watermark));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Commits what was processed of the revoked partitions, then stops tracking them: their records still in
+     * flight will be redelivered to the new owner.
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+        try {
+            commitSync(revoked);
+        } finally {
+            for (TopicPartition partition : revoked) {
+                partitions.remove(partition);
+                committed.remove(partition);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+        // The partitions are tracked from their first polled record.
+    }
+
+    /**
+     * Commits the watermarks of all the partitions synchronously.  Does not close the consumer.
+     */
+    @Override
+    public void close() {
+        commitSync(partitions.keySet());
+    }
+
+    /**
+     * @return the watermark of the given partition (the offset to commit), or -1 if it is not tracked
+     */
+    public long getWatermark(TopicPartition partition) {
+        final ProcessedOffsets processed = partitions.get(partition);
+        return processed == null ? -1 : processed.watermark();
+    }
+
+    /**
+     * @return number of successful commits
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /**
+     * @return number of failed asynchronous commits
+     */
+    public long getFailedCommitCount() {
+        return failedCommits.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OffsetCommitManager{partitions=" + partitions.size() + ", commits=" + getCommitCount() + ", failedCommits="
+                + getFailedCommitCount() + "}";
+    }
+
+    /**
+     * The processed offsets of a partition: the watermark, and a bitset of the offsets processed beyond it.
+     * <p>
+     * The bitset is a ring of words: the bit of an offset is bit {@code offset % 64} of word
+     * {@code (offset / 64) % words.length}, and is cleared when the watermark passes it, so the ring only grows with
+     * the distance between the watermark and the furthest completed offset.
+     */
+    static final class ProcessedOffsets {
+
+        private long watermark;
+        private long nextPolled;
+        private long[] words = new long[8];
+
+        ProcessedOffsets(long firstOffset) {
+            this.watermark = firstOffset;
+            this.nextPolled = firstOffset;
+        }
+
+        /**
+         * Offsets skipped by the polls (compacted records, transaction markers) will never be completed, they are
+         * processed as far as the watermark is concerned.
+         */
+        synchronized void polled(List<? extends ConsumerRecord<?, ?>> records) {
+            for (ConsumerRecord<?, ?> record : records) {
+                final long offset = record.offset();
+                if (offset < nextPolled) {
+                    continue;
+                }
+                for (long skipped = nextPolled; skipped < offset; skipped++) {
+                    completed(skipped);
+                }
+                nextPolled = offset + 1;
+            }
+        }
+
+        synchronized void completed(long offset) {
+            if (offset < watermark) {
+                return;
+            }
+            ensureCapacity(offset);
+            words[index(offset)] |= 1L << offset;
+            if (offset == watermark) {
+                advance();
+            }
+        }
+
+        synchronized long watermark() {
+            return watermark;
+        }
+
+        /**
+         * Moves the watermark over the contiguous completed offsets, a word at a time.
+         */
+        private void advance() {
+            while (true) {
+                final int index = index(watermark);
+                final int shift = (int) (watermark & 63);
+                final int count = Long.numberOfTrailingZeros(~(words[index] >>> shift));
+                if (count == 0) {
+                    return;
+                }
+                words[index] &= ~((count == 64 ? -1L : (1L << count) - 1) << shift);
+                watermark += count;
+                if (shift + count < 64) {
+                    return;
+                }
+            }
+        }
+
+        private void ensureCapacity(long offset) {
+            final long span = (offset >>> 6) - (watermark >>> 6);
+            if (span < words.length) {
+                return;
+            }
+            int length = words.length;
+            while (length <= span) {
+                length <<= 1;
+            }
+            final long[] grown = new long[length];
+            for (long word = watermark >>> 6; word < (watermark >>> 6) + words.length; word++) {
+                grown[(int) (word & (length - 1))] = words[(int) (word & (words.length - 1))];
+            }
+            words = grown;
+        }
+
+        private int index(long offset) {
+            return (int) ((offset >>> 6) & (words.length - 1));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Subscription;
+
+/**
+ * Helpers shared by the reactive pipeline stages ({@link RecordPublisher}, {@link BatchProcessor},
+ * {@link SendSubscriber} and {@link IteratorPublisher}).
+ */
+final class Reactive {
+
+    /**
+     * The subscription given to rejected subscribers, before their {@code onError}.
+     */
+    static final Subscription CANCELLED = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private Reactive() {
+    }
+
+    /**
+     * Adds to an outstanding demand, a demand of {@link Long#MAX_VALUE} or more being unbounded.
+     */
+    static long addDemand(AtomicLong requested, long n) {
+        return requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+    }
+
+    /**
+     * Multiplies a demand, saturating at {@link Long#MAX_VALUE}.
+     */
+    static long multiplyDemand(long n, long factor) {
+        return n > Long.MAX_VALUE / factor ? Long.MAX_VALUE : n * factor;
+    }
+}
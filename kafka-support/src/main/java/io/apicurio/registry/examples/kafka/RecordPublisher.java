@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the records of a Kafka consumer, deserialized by its configured (registry-aware) deserializers, as they
+ * are requested.
+ * <p>
+ * The consumer is polled by a dedicated thread, only when the records of the previous poll are delivered and more
+ * are requested: at most one poll of records ({@code max.poll.records}) is held by the publisher.  Without demand,
+ * the assigned partitions are paused and the consumer keeps polling, to stay in its group without fetching.
+ * <p>
+ * The offsets are committed by the given {@link OffsetCommitManager}, which must be the rebalance listener of the
+ * consumer subscription: the subscriber calls {@link OffsetCommitManager#completed} once a record is processed, in
+ * any order and from any thread.  The publisher owns the consumer: when the subscription is cancelled or fails, the
+ * processed offsets are committed and the consumer is closed, then {@link #termination()} completes.  Kafka topics
+ * do not end, the publisher never calls {@code onComplete}.
+ */
+public class RecordPublisher<K, V> implements Publisher<ConsumerRecord<K, V>> {
+
+    private final Consumer<K, V> consumer;
+    private final OffsetCommitManager commits;
+    private final Duration pollTimeout;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+    public RecordPublisher(Consumer<K, V> consumer, OffsetCommitManager commits) {
+        this(consumer, commits, Duration.ofMillis(100));
+    }
+
+    /**
+     * @param consumer subscribed consumer, with {@code commits} as its rebalance listener
+     * @param commits commits the offsets of the processed records
+     * @param pollTimeout timeout of the polls, and interval of the polls of the paused consumer
+     */
+    public RecordPublisher(Consumer<K, V> consumer, OffsetCommitManager commits, Duration pollTimeout) {
+        this.consumer = consumer;
+        this.commits = commits;
+        this.pollTimeout = pollTimeout;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ConsumerRecord<K, V>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(Reactive.CANCELLED);
+            subscriber.onError(new IllegalStateException("RecordPublisher allows a single subscriber"));
+            return;
+        }
+        final Thread thread = new Thread(new PollLoop(subscriber), "record-publisher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return completed once the consumer is closed, after the subscription was cancelled or failed
+     */
+    public CompletableFuture<Void> termination() {
+        return termination;
+    }
+
+    private final class PollLoop implements Runnable, Subscription {
+
+        private final Subscriber<? super ConsumerRecord<K, V>> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Accessed by the poll thread only.
+        private final ArrayDeque<ConsumerRecord<K, V>> buffer = new ArrayDeque<>();
+        private boolean paused;
+
+        private PollLoop(Subscriber<? super ConsumerRecord<K, V>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " records, must be positive");
+                cancelled = true;
+            } else {
+                Reactive.addDemand(requested, n);
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            Throwable failure = null;
+            try {
+                subscriber.onSubscribe(this);
+                while (!cancelled) {
+                    if (buffer.isEmpty() && requested.get() > 0) {
+                        resume();
+                        poll(pollTimeout);
+                    }
+                    while (!buffer.isEmpty() && requested.get() > 0 && !cancelled) {
+                        subscriber.onNext(buffer.poll());
+                        if (requested.get() != Long.MAX_VALUE) {
+                            requested.decrementAndGet();
+                        }
+                    }
+                    commits.maybeCommit();
+                    if (requested.get() == 0 && !cancelled) {
+                        pause();
+                        awaitDemand();
+                        if (requested.get() == 0 && !cancelled && paused) {
+                            // Paused poll: keeps the consumer in the group, and runs the rebalances and commit callbacks.
+                            poll(Duration.ZERO);
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                try {
+                    commits.close();
+                    consumer.close();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (invalidRequest != null) {
+                failure = invalidRequest;
+            }
+            if (failure != null && (invalidRequest != null || !cancelled)) {
+                subscriber.onError(failure);
+            }
+            if (failure != null) {
+                termination.completeExceptionally(failure);
+            } else {
+                termination.complete(null);
+            }
+        }
+
+        private void poll(Duration timeout) {
+            final ConsumerRecords<K, V> records = consumer.poll(timeout);
+            // Partitions assigned while paused are not paused until the next pause(), their records are kept for
+            // the next demand.
+            commits.track(records);
+            for (ConsumerRecord<K, V> record : records) {
+                buffer.add(record);
+            }
+        }
+
+        private synchronized void awaitDemand() throws InterruptedException {
+            if (requested.get() == 0 && !cancelled) {
+                wait(Math.max(1, pollTimeout.toMillis()));
+            }
+        }
+
+        /**
+         * Pauses the assigned partitions, including the ones assigned since the last pause.  A consumer with no
+         * assignment yet is not polled until there is demand.
+         */
+        private void pause() {
+            if (!consumer.assignment().isEmpty()) {
+                consumer.pause(consumer.assignment());
+                paused = true;
+            }
+        }
+
+        private void resume() {
+            if (paused) {
+                consumer.resume(consumer.paused());
+                paused = false;
+            }
+        }
+    }
+}
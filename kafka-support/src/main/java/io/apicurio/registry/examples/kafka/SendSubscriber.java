@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.kafka;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Sends the records of a publisher with a Kafka producer, with at most {@code maxInFlight} records sent but not
+ * yet acknowledged.
+ * <p>
+ * The subscriber requests {@code maxInFlight} records up front, then one more from the send callback of every
+ * acknowledged record: the upstream produces at the pace of the broker acknowledgements instead of filling the
+ * producer buffer, and the upstream must not emit on the producer I/O thread (see {@link IteratorPublisher}).  The
+ * first failed send cancels the subscription and fails the {@link #completion()}.  The producer is not closed.
+ */
+public class SendSubscriber<K, V> implements Subscriber<ProducerRecord<K, V>> {
+
+    private final Producer<K, V> producer;
+    private final int maxInFlight;
+
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private volatile Subscription subscription;
+    private volatile boolean upstreamDone;
+
+    /**
+     * @param producer producer the records are sent with
+     * @param maxInFlight max number of records sent and not acknowledged yet
+     */
+    public SendSubscriber(Producer<K, V> producer, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight records must be at least 1: " + maxInFlight);
+        }
+        this.producer = producer;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(ProducerRecord<K, V> record) {
+        Objects.requireNonNull(record, "record");
+        if (completion.isDone()) {
+            return;
+        }
+        inFlight.incrementAndGet();
+        try {
+            producer.send(record, this::onAcknowledged);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            fail(e);
+        }
+    }
+
+    private void onAcknowledged(RecordMetadata metadata, Exception error) {
+        if (error != null) {
+            inFlight.decrementAndGet();
+            fail(error);
+            return;
+        }
+        acknowledged.incrementAndGet();
+        if (inFlight.decrementAndGet() == 0 && upstreamDone) {
+            completion.complete(acknowledged.get());
+        } else if (!upstreamDone && !completion.isDone()) {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        Objects.requireNonNull(error, "error");
+        upstreamDone = true;
+        completion.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        if (inFlight.get() == 0) {
+            completion.complete(acknowledged.get());
+        }
+    }
+
+    private void fail(Throwable error) {
+        if (completion.completeExceptionally(error)) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * @return completed with the number of acknowledged records once the upstream completed and every record is
+     *         acknowledged, or failed with the first send or upstream error
+     */
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    /**
+     * @return number of records sent and not acknowledged yet
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
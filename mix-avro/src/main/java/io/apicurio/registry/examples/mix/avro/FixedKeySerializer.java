@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+import io.apicurio.registry.client.CompatibleClient;
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.ArtifactIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.RecordIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.TopicIdStrategy;
+
+/**
+ * Base of the key serializers writing keys as fixed-width raw bytes, described in the registry by an Avro
+ * {@code fixed} schema: the bytes of a key are exactly its Avro binary encoding.
+ * <p>
+ * The key bytes carry no magic byte nor global id, so that they stay compact and partition the same way whatever
+ * the registry.  When a registry url is configured, the key schema is registered on the first record of a topic
+ * through the configured global id strategy (as for the {@link IdentitySchemaSerializer}) and its global id is sent
+ * in the {@value #KEY_GLOBAL_ID_HEADER} header, 8 bytes big-endian.  The artifact id strategy of the values (e.g.
+ * the {@link RecordIdStrategy}, which only accepts record schemas) does not apply to the keys, their artifact id
+ * strategy is configured by {@value #KEY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM} and is the {@link TopicIdStrategy}
+ * ("topic-key") by default.
+ *
+ * @see UuidKeySerializer
+ * @see LongKeySerializer
+ */
+@SuppressWarnings("deprecation")
+public abstract class FixedKeySerializer<T> implements Serializer<T> {
+
+    public static final String KEY_GLOBAL_ID_HEADER = "apicurio.key.globalId";
+    public static final String KEY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM = "apicurio.registry.key.artifact-id";
+
+    private final Schema schema;
+    private final int size;
+
+    private RegistryService service;
+    private ArtifactIdStrategy<Schema> artifactIdStrategy;
+    private GlobalIdStrategy<Schema> globalIdStrategy;
+    private boolean isKey;
+    private final Map<String, byte[]> globalIds = new ConcurrentHashMap<>();
+
+    protected FixedKeySerializer(String schema) {
+        this.schema = new Schema.Parser().parse(schema);
+        if (this.schema.getType() != Schema.Type.FIXED) {
+            throw new IllegalArgumentException("Not a fixed schema: " + schema);
+        }
+        this.size = this.schema.getFixedSize();
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.isKey = isKey;
+        Object url = configs.get(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+        if (url != null) {
+            service = CompatibleClient.createCompatible(url.toString());
+            artifactIdStrategy = newInstance(configs.get(KEY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM), TopicIdStrategy.class, ArtifactIdStrategy.class);
+            globalIdStrategy = newInstance(configs.get(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM), CachedSchemaIdStrategy.class, GlobalIdStrategy.class);
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        byte[] bytes = new byte[size];
+        write(data, bytes);
+        return bytes;
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (service != null && data != null) {
+            headers.add(KEY_GLOBAL_ID_HEADER, globalIds.computeIfAbsent(topic, this::register));
+        }
+        return serialize(topic, data);
+    }
+
+    private byte[] register(String topic) {
+        String artifactId = artifactIdStrategy.artifactId(topic, isKey, schema);
+        long globalId = globalIdStrategy.findId(service, artifactId, ArtifactType.AVRO, schema);
+        return ByteBuffer.allocate(Long.BYTES).putLong(globalId).array();
+    }
+
+    /**
+     * Writes the given key into the given array, of the size of the fixed schema.
+     */
+    protected abstract void write(T data, byte[] bytes);
+
+    /**
+     * @return the Avro schema describing the keys
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void close() {
+        if (service != null) {
+            try {
+                service.close();
+            } catch (Exception e) {
+                // Nothing to do on close failures.
+            }
+        }
+    }
+
+    /**
+     * Writes a long at the given offset, big-endian.
+     */
+    static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Reads a long at the given offset, big-endian.
+     */
+    static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> S newInstance(Object config, Class<?> defaultClass, Class<?> type) {
+        try {
+            if (config == null) {
+                return (S) Utils.newInstance(defaultClass);
+            }
+            if (config instanceof Class) {
+                return (S) Utils.newInstance((Class) config);
+            }
+            if (type.isInstance(config)) {
+                return (S) config;
+            }
+            return (S) Utils.newInstance(config.toString(), type);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot load " + type.getSimpleName() + ": " + config, e);
+        }
+    }
+
+}
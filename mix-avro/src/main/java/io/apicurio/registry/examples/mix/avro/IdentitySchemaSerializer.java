@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+import io.apicurio.registry.client.CompatibleClient;
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.ArtifactIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.RecordIdStrategy;
+
+/**
+ * An Avro serializer for producers sending records of several schemas, which keeps the state of every schema in an
+ * identity map: its datum writer, and its artifact id and global id on every topic it is sent to.
+ * <p>
+ * Only the first record of a schema on a topic goes through the artifact id and global id strategies (by default
+ * the {@link RecordIdStrategy} and {@link CachedSchemaIdStrategy}, configured as for the {@code AvroKafkaSerializer}),
+ * the next ones only cost an identity lookup and a topic lookup, whatever the size of their schema.  Records whose
+ * schema is equal to an already known one but is another instance share its state through the
+ * {@link SchemaInterner}.
+ * <p>
+ * A registry service given to the constructor belongs to the caller and is not closed by {@link #close()}, only the
+ * one created from the configuration is.
+ * <p>
+ * The records are written in the default format of the Apicurio serdes (magic byte, 8 bytes global id and Avro
+ * binary data), so they are read by the {@code AvroKafkaDeserializer}.
+ */
+@SuppressWarnings("deprecation")
+public class IdentitySchemaSerializer<T extends GenericContainer> implements Serializer<T> {
+
+    // Bounds the state kept for schema instances created on the fly, the map is rebuilt past this size.
+    private static final int MAX_SCHEMAS = 1000;
+
+    private RegistryService service;
+    // True if the service was created by configure, and is thus closed with the serializer.
+    private boolean ownsService;
+    private ArtifactIdStrategy<Schema> artifactIdStrategy;
+    private GlobalIdStrategy<Schema> globalIdStrategy;
+    private boolean isKey;
+
+    // Copy-on-write: the sends only read the current maps, without locking.
+    private volatile Map<Schema, SchemaState> states = new IdentityHashMap<>();
+
+    public IdentitySchemaSerializer() {
+    }
+
+    public IdentitySchemaSerializer(RegistryService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.isKey = isKey;
+        if (service == null) {
+            Object url = configs.get(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+            if (url == null) {
+                throw new IllegalArgumentException("Missing registry url config: " + AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+            }
+            service = CompatibleClient.createCompatible(url.toString());
+            ownsService = true;
+        }
+        artifactIdStrategy = newInstance(configs.get(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM), RecordIdStrategy.class, ArtifactIdStrategy.class);
+        globalIdStrategy = newInstance(configs.get(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM), CachedSchemaIdStrategy.class, GlobalIdStrategy.class);
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        SchemaState state = states.get(data.getSchema());
+        // The artifact id can depend on the topic, so the ids are kept per topic.
+        TopicIds ids = state == null ? null : state.topics.get(topic);
+        if (ids == null) {
+            state = resolve(data.getSchema());
+            ids = resolve(state, topic);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(AbstractKafkaSerDe.MAGIC_BYTE);
+            out.write(ids.globalIdBytes);
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+            state.writer.write(data, encoder);
+            encoder.flush();
+            return out.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot serialize record of schema " + data.getSchema().getFullName(), e);
+        }
+    }
+
+    private synchronized SchemaState resolve(Schema schema) {
+        SchemaState state = states.get(schema);
+        if (state != null) {
+            return state;
+        }
+        // Another instance of the same schema may have been resolved already.
+        Schema interned = SchemaInterner.intern(schema);
+        state = interned == schema ? null : states.get(interned);
+        if (state == null) {
+            state = new SchemaState(interned, new GenericDatumWriter<>(interned));
+        }
+        Map<Schema, SchemaState> copy = states.size() < MAX_SCHEMAS ? new IdentityHashMap<>(states) : new IdentityHashMap<>();
+        copy.put(interned, state);
+        copy.put(schema, state);
+        states = copy;
+        return state;
+    }
+
+    private synchronized TopicIds resolve(SchemaState state, String topic) {
+        TopicIds ids = state.topics.get(topic);
+        if (ids == null) {
+            String artifactId = artifactIdStrategy.artifactId(topic, isKey, state.schema);
+            long globalId = globalIdStrategy.findId(service, artifactId, ArtifactType.AVRO, state.schema);
+            ids = new TopicIds(artifactId, globalId);
+            Map<String, TopicIds> copy = new HashMap<>(state.topics);
+            copy.put(topic, ids);
+            state.topics = copy;
+        }
+        return ids;
+    }
+
+    /**
+     * @return the global id the records of the given schema are sent with on the given topic, or null if none was
+     * sent yet
+     */
+    public Long getGlobalId(String topic, Schema schema) {
+        SchemaState state = states.get(schema);
+        TopicIds ids = state == null ? null : state.topics.get(topic);
+        return ids == null ? null : ids.globalId;
+    }
+
+    @Override
+    public void close() {
+        if (!ownsService) {
+            return;
+        }
+        try {
+            service.close();
+        } catch (Exception e) {
+            // Nothing to do on close failures.
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> S newInstance(Object config, Class<?> defaultClass, Class<?> type) {
+        try {
+            if (config == null) {
+                return (S) Utils.newInstance(defaultClass);
+            }
+            if (config instanceof Class) {
+                return (S) Utils.newInstance((Class) config);
+            }
+            if (type.isInstance(config)) {
+                return (S) config;
+            }
+            return (S) Utils.newInstance(config.toString(), type);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot load " + type.getSimpleName() + ": " + config, e);
+        }
+    }
+
+    private static final class SchemaState {
+
+        private final Schema schema;
+        private final DatumWriter<Object> writer;
+        // Copy-on-write, updated under the serializer lock.
+        private volatile Map<String, TopicIds> topics = Collections.emptyMap();
+
+        private SchemaState(Schema schema, DatumWriter<Object> writer) {
+            this.schema = schema;
+            this.writer = writer;
+        }
+
+        @Override
+        public String toString() {
+            return schema.getFullName() + topics;
+        }
+    }
+
+    private static final class TopicIds {
+
+        private final String artifactId;
+        private final long globalId;
+        private final byte[] globalIdBytes;
+
+        private TopicIds(String artifactId, long globalId) {
+            this.artifactId = artifactId;
+            this.globalId = globalId;
+            this.globalIdBytes = ByteBuffer.allocate(Long.BYTES).putLong(globalId).array();
+        }
+
+        @Override
+        public String toString() {
+            return artifactId + "@" + globalId;
+        }
+    }
+
+}
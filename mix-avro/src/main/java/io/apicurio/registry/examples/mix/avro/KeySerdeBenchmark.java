@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+/**
+ * Compares the key serdes of the {@link MixAvroExample}: UUID keys sent as strings (as the example used to) or with
+ * the {@link UuidKeySerializer}, and numeric keys with the Kafka {@link LongSerializer}, the
+ * {@link LongKeySerializer} or its boxing-free {@link LongKeySerializer#toBytes(long)}.
+ * <p>
+ * For every serde the key bytes per record, the bytes allocated per record by the serialization and
+ * deserialization (measured with the per-thread allocation counter of the JVM) and the time per record are
+ * printed.  The keys are generated up front, so that neither {@code UUID.randomUUID()} nor the boxing of the keys
+ * is measured.  No registry is configured: the registration of the key schema is a one-off per topic.
+ * <p>
+ * Usage: KeySerdeBenchmark [records].  No Kafka broker or registry is needed.
+ */
+public class KeySerdeBenchmark {
+
+    private static final String TOPIC_NAME = MixAvroExample.TOPIC_NAME;
+    private static final int KEYS = 1024;
+
+    // Accumulates the deserialized keys, so that the JIT cannot drop the deserialization.
+    private static long sink;
+
+    public static final void main(String [] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.println("Starting benchmark " + KeySerdeBenchmark.class.getSimpleName() + " (" + records + " records)");
+
+        UUID[] uuids = new UUID[KEYS];
+        Long[] longs = new Long[KEYS];
+        long[] primitives = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            uuids[i] = UUID.randomUUID();
+            primitives[i] = uuids[i].getMostSignificantBits();
+            longs[i] = primitives[i];
+        }
+
+        StringSerializer stringSerializer = new StringSerializer();
+        StringDeserializer stringDeserializer = new StringDeserializer();
+        UuidKeySerializer uuidSerializer = new UuidKeySerializer();
+        UuidKeyDeserializer uuidDeserializer = new UuidKeyDeserializer();
+        LongSerializer longSerializer = new LongSerializer();
+        LongDeserializer longDeserializer = new LongDeserializer();
+        LongKeySerializer longKeySerializer = new LongKeySerializer();
+        LongKeyDeserializer longKeyDeserializer = new LongKeyDeserializer();
+
+        // Twice: the first round warms up the JIT and is not printed.
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            // The string keys are built from the UUIDs and parsed back, as an application keyed by UUIDs does.
+            measure("UUID as string", print, records,
+                    i -> stringSerializer.serialize(TOPIC_NAME, uuids[i].toString()),
+                    bytes -> UUID.fromString(stringDeserializer.deserialize(TOPIC_NAME, bytes)).getLeastSignificantBits());
+            measure("UuidKeySerializer", print, records,
+                    i -> uuidSerializer.serialize(TOPIC_NAME, uuids[i]),
+                    bytes -> uuidDeserializer.deserialize(TOPIC_NAME, bytes).getLeastSignificantBits());
+            measure("Kafka LongSerializer", print, records,
+                    i -> longSerializer.serialize(TOPIC_NAME, longs[i]),
+                    bytes -> longDeserializer.deserialize(TOPIC_NAME, bytes));
+            measure("LongKeySerializer", print, records,
+                    i -> longKeySerializer.serialize(TOPIC_NAME, longs[i]),
+                    bytes -> longKeyDeserializer.deserialize(TOPIC_NAME, bytes));
+            measure("LongKeySerializer.toBytes", print, records,
+                    i -> LongKeySerializer.toBytes(primitives[i]),
+                    LongKeyDeserializer::toLong);
+        }
+        System.out.println("Done (success).");
+        System.exit(0);
+    }
+
+    private static void measure(String name, boolean print, int records, KeyWriter writer, KeyReader reader) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long keyBytes = 0;
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            byte[] bytes = writer.write(i & (KEYS - 1));
+            keyBytes += bytes.length;
+            sink += reader.read(bytes);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        if (print) {
+            System.out.println(String.format("%-26s %5.1f key bytes/record, %6.1f allocated bytes/record, %6.1f ns/record",
+                    name, (double) keyBytes / records, (double) allocated / records, (double) elapsed / records));
+        }
+    }
+
+    /**
+     * Serializes the key of the given index.
+     */
+    private interface KeyWriter {
+        byte[] write(int index);
+    }
+
+    /**
+     * Deserializes a key, reduced to a long.
+     */
+    private interface KeyReader {
+        long read(byte[] bytes);
+    }
+
+}
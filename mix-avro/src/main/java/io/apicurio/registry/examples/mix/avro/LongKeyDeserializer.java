@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads the numeric keys written by the {@link LongKeySerializer}.  Consumers keyed by primitive longs can avoid
+ * boxing the keys with {@link #toLong(byte[])} and a {@code ByteArrayDeserializer}.
+ */
+public class LongKeyDeserializer implements Deserializer<Long> {
+
+    @Override
+    public Long deserialize(String topic, byte[] data) {
+        return data == null ? null : toLong(data);
+    }
+
+    /**
+     * @return the key of the given serialized form
+     */
+    public static long toLong(byte[] data) {
+        if (data.length != Long.BYTES) {
+            throw new SerializationException("Invalid long key, " + data.length + " bytes instead of 8");
+        }
+        return FixedKeySerializer.getLong(data, 0);
+    }
+
+}
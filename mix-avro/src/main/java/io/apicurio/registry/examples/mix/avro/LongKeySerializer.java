@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+/**
+ * Writes numeric keys as 8 bytes, big-endian (the Avro {@code long} type is variable-length, so the keys are
+ * described by a {@code fixed} schema).  Read by the {@link LongKeyDeserializer}.
+ * <p>
+ * Producers keyed by primitive longs can avoid boxing the keys with {@link #toBytes(long)} and a
+ * {@code ByteArraySerializer}: the bytes are the same.
+ */
+public class LongKeySerializer extends FixedKeySerializer<Long> {
+
+    public static final String SCHEMA = "{\"type\":\"fixed\",\"name\":\"Int64\",\"namespace\":\"io.apicurio.registry.examples\",\"size\":8}";
+
+    public LongKeySerializer() {
+        super(SCHEMA);
+    }
+
+    @Override
+    protected void write(Long data, byte[] bytes) {
+        putLong(bytes, 0, data);
+    }
+
+    /**
+     * @return the serialized form of the given key
+     */
+    public static byte[] toBytes(long key) {
+        byte[] bytes = new byte[Long.BYTES];
+        putLong(bytes, 0, key);
+        return bytes;
+    }
+
+}
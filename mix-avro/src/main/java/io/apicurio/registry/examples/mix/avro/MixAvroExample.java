@@ -25,20 +25,21 @@ import java.util.UUID;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.serialization.StringDeserializer;
-import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
-import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
-import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
 import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
 import io.apicurio.registry.utils.serde.strategy.RecordIdStrategy;
 
@@ -50,10 +51,11 @@ import io.apicurio.registry.utils.serde.strategy.RecordIdStrategy;
  *
  * <ol>
  *   <li>Configuring a Kafka Serializer for use with Apicurio Registry</li>
- *   <li>Configuring a Kafka Deserializer for use with Apicurio Registry</li>
+ *   <li>Dispatching the consumed messages to one handler per schema, using the globalId in the payload</li>
  *   <li>Auto-register the Avro schema in the registry (registered by the producer)</li>
  *   <li>Data sent as a simple GenericRecord, no java beans needed</li>
  *   <li>Producing and consuming Avro messages using different schemas mapped to different Apicurio Registry Artifacts</li>
+ *   <li>Sending the UUID keys as 16 raw bytes described by a registered fixed schema, see the {@link UuidKeySerializer}</li>
  * </ol>
  *
  * Pre-requisites:
@@ -69,11 +71,11 @@ public class MixAvroExample {
 
     private static final String REGISTRY_URL = "http://localhost:8080/api";
     private static final String SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = MixAvroExample.class.getSimpleName();
-    private static final String SCHEMAV1 = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
-    private static final String SCHEMAV2 = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"},{\"name\":\"Extra\",\"type\":\"string\"}]}";
-    private static final String FAREWELLSCHEMAV1 = "{\"type\":\"record\",\"name\":\"Farewell\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
-    private static final String FAREWELLSCHEMAV2 = "{\"type\":\"record\",\"name\":\"Farewell\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"},{\"name\":\"Extra\",\"type\":\"string\"}]}";
+    static final String TOPIC_NAME = MixAvroExample.class.getSimpleName();
+    static final String SCHEMAV1 = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
+    static final String SCHEMAV2 = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"},{\"name\":\"Extra\",\"type\":\"string\"}]}";
+    static final String FAREWELLSCHEMAV1 = "{\"type\":\"record\",\"name\":\"Farewell\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
+    static final String FAREWELLSCHEMAV2 = "{\"type\":\"record\",\"name\":\"Farewell\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"},{\"name\":\"Extra\",\"type\":\"string\"}]}";
 
 
     public static final void main(String [] args) throws Exception {
@@ -85,13 +87,13 @@ public class MixAvroExample {
 
         int producedMessages = 0;
         try {
-            producedMessages += produceMessages(producer, topicName, SCHEMAV1, null);
+            producedMessages += produceMessages(producer, topicName, SCHEMAV1, null, 5, 100);
 
-            producedMessages += produceMessages(producer, topicName, SCHEMAV2, "extra greeting");
+            producedMessages += produceMessages(producer, topicName, SCHEMAV2, "extra greeting", 5, 100);
 
-            producedMessages += produceMessages(producer, topicName, FAREWELLSCHEMAV1, null);
+            producedMessages += produceMessages(producer, topicName, FAREWELLSCHEMAV1, null, 5, 100);
 
-            producedMessages += produceMessages(producer, topicName, FAREWELLSCHEMAV2, "extra farewell");
+            producedMessages += produceMessages(producer, topicName, FAREWELLSCHEMAV2, "extra farewell", 5, 100);
 
         } finally {
             System.out.println("Closing the producer.");
@@ -101,33 +103,20 @@ public class MixAvroExample {
 
         // Create the consumer
         System.out.println("Creating the consumer.");
-        KafkaConsumer<Long, GenericRecord> consumer = createKafkaConsumer();
+        KafkaConsumer<UUID, byte[]> consumer = createKafkaConsumer();
+        SchemaDispatcher<UUID> dispatcher = createDispatcher(REGISTRY_URL, true);
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
-        // Consume the 5 messages.
+        // Consume the messages.
         try {
-            int messageCount = 0;
             System.out.println("Consuming ("+producedMessages+") messages.");
-            while (messageCount < producedMessages) {
-                final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
-                messageCount += records.count();
-                if (records.count() == 0) {
-                    // Do nothing - no messages waiting.
-                    System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
-                    GenericRecord value = record.value();
-                    value.getSchema().getFullName();
-                    if (value.hasField("Extra")) {
-                        System.out.println("Consumed "+value.getSchema().getFullName()+": " + value.get("Message") + " @ " + new Date((long) value.get("Time")) + " @ " + value.get("Extra"));
-                    } else {
-                        System.out.println("Consumed "+value.getSchema().getFullName()+": " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
-                    }
-                });
-            }
+            consumeMessages(consumer, commits, dispatcher, producedMessages, true);
         } finally {
+            commits.close();
             consumer.close();
         }
 
@@ -135,11 +124,16 @@ public class MixAvroExample {
         System.exit(0);
     }
 
-    private static int produceMessages(Producer<Object, Object> producer, String topicName, String schemaContent, String extra) throws InterruptedException {
+    /**
+     * Produces the given number of messages with the given schema, pausing between each of them.  The producer
+     * can be a Kafka producer or a mock one (see the {@code MixAvroThroughputCheck}).
+     */
+    static int produceMessages(Producer<Object, Object> producer, String topicName, String schemaContent, String extra, int count, long pauseMillis) throws InterruptedException {
         int producedMessages = 0;
-        Schema schema = new Schema.Parser().parse(schemaContent);
-        System.out.println("Producing (5) messages.");
-        for (int idx = 0; idx < 5; idx++) {
+        // Parsed once per schema, every call with the same schema gets the same instance.
+        Schema schema = SchemaInterner.parse(schemaContent);
+        System.out.println("Producing (" + count + ") messages.");
+        for (int idx = 0; idx < count; idx++) {
             // Use the schema to create a record
             GenericRecord record = new GenericData.Record(schema);
             Date now = new Date();
@@ -151,66 +145,130 @@ public class MixAvroExample {
             }
 
             // Send/produce the message on the Kafka Producer
-            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, UUID.randomUUID().toString(), record);
+            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, UUID.randomUUID(), record);
             producer.send(producedRecord);
 
-            Thread.sleep(100);
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
         }
         System.out.println("Messages successfully produced.");
         return producedMessages;
     }
 
+    /**
+     * Consumes the given number of messages, passing them to the handlers of their schema, and commits their
+     * offsets once handled.
+     */
+    static void consumeMessages(Consumer<UUID, byte[]> consumer, OffsetCommitManager commits, SchemaDispatcher<UUID> dispatcher, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<UUID, byte[]> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            messageCount += records.count();
+            if (print && records.count() == 0) {
+                // Do nothing - no messages waiting.
+                System.out.println("No messages waiting...");
+            }
+            dispatcher.dispatch(records);
+            for (ConsumerRecord<UUID, byte[]> record : records) {
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
+    /**
+     * Creates the dispatcher of the consumed messages, with one handler per schema (printing the messages if asked
+     * to).  The handlers are created once per schema version, so whether a version has the "Extra" field is only
+     * checked once, not on every message.
+     */
+    static SchemaDispatcher<UUID> createDispatcher(String registryUrl, boolean print) {
+        SchemaDispatcher<UUID> dispatcher = new SchemaDispatcher<>(RegistryRestClientFactory.create(registryUrl));
+        if (!print) {
+            return dispatcher.on("Greeting", (record, value) -> { }).on("Farewell", (record, value) -> { });
+        }
+        return dispatcher
+                .on("Greeting", MixAvroExample::printer)
+                .on("Farewell", MixAvroExample::printer)
+                .fallback((record, value) -> System.out.println("Consumed a message of an unknown schema at offset " + record.offset()));
+    }
+
+    private static SchemaDispatcher.Handler<UUID> printer(Schema schema) {
+        String name = schema.getFullName();
+        int message = schema.getField("Message").pos();
+        int time = schema.getField("Time").pos();
+        Schema.Field extra = schema.getField("Extra");
+        if (extra == null) {
+            return (record, value) -> System.out.println("Consumed " + name + ": " + value.get(message) + " @ " + new Date((long) value.get(time)));
+        }
+        int extraPos = extra.pos();
+        return (record, value) -> System.out.println("Consumed " + name + ": " + value.get(message) + " @ " + new Date((long) value.get(time)) + " @ " + value.get(extraPos));
+    }
+
     /**
      * Creates the Kafka producer.
      */
     private static Producer<Object, Object> createKafkaProducer() {
+        // Create the Kafka producer
+        Producer<Object, Object> producer = new KafkaProducer<>(createProducerConfig(REGISTRY_URL));
+        return producer;
+    }
+
+    /**
+     * Creates the Kafka producer configuration, for the given registry.
+     */
+    static Properties createProducerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure kafka settings
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ProducerConfig.CLIENT_ID_CONFIG, "Producer-" + TOPIC_NAME);
         props.putIfAbsent(ProducerConfig.ACKS_CONFIG, "all");
-        props.putIfAbsent(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        // Use the Apicurio Registry provided Kafka Serializer for Avro
-        props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroKafkaSerializer.class.getName());
+        // The UUID keys are sent as 16 raw bytes instead of 36 characters, their fixed schema is registered too
+        props.putIfAbsent(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, UuidKeySerializer.class.getName());
+        // Use an Avro serializer keeping the ids of the schemas by schema identity, as the records of the
+        // four schemas are interleaved (the AvroKafkaSerializer.class.getName() works too)
+        props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, IdentitySchemaSerializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, RecordIdStrategy.class.getName());
         // Get an existing schema or auto-register if not found
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CachedSchemaIdStrategy.class.getName());
 
-        // Create the Kafka producer
-        Producer<Object, Object> producer = new KafkaProducer<>(props);
-        return producer;
+        return props;
     }
 
     /**
      * Creates the Kafka consumer.
      */
-    private static KafkaConsumer<Long, GenericRecord> createKafkaConsumer() {
+    private static KafkaConsumer<UUID, byte[]> createKafkaConsumer() {
+        // Create the Kafka Consumer
+        KafkaConsumer<UUID, byte[]> consumer = new KafkaConsumer<>(createConsumerConfig());
+        return consumer;
+    }
+
+    /**
+     * Creates the Kafka consumer configuration, the registry is only used by the {@link SchemaDispatcher}.
+     */
+    static Properties createConsumerConfig() {
         Properties props = new Properties();
 
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        // Use the Apicurio Registry provided Kafka Deserializer for Avro
-        props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroKafkaDeserializer.class.getName());
+        props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, UuidKeyDeserializer.class.getName());
+        // The values are read as raw bytes and decoded by the SchemaDispatcher, which extracts the
+        // globalId sent as part of the payload and looks up the Schema (and its handler) only once per
+        // globalId.
+        props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
 
-        // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
-        // No other configuration needed for the deserializer, because the globalId of the schema
-        // the deserializer should use is sent as part of the payload.  So the deserializer simply
-        // extracts that globalId and uses it to look up the Schema from the registry.
-
-        // Create the Kafka Consumer
-        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(props);
-        return consumer;
+        return props;
     }
 
 }
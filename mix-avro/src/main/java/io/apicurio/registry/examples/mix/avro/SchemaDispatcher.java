@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.errors.SerializationException;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
+
+/**
+ * Routes the records of a topic mixing several Avro schemas to one handler per schema.
+ * <p>
+ * Handlers are registered by schema full name or by global id, with a fallback handler for the other schemas.  The
+ * consumer reads the values as raw bytes ({@code ByteArrayDeserializer}): the global id at the head of every value
+ * is looked up in a global id -> (datum reader, handler) table, which is filled the first time a global id is seen,
+ * so the records are decoded and routed without any schema name comparison or field probe.  A handler can also be
+ * registered through a factory, called once per global id with the writer schema, to specialize it for the version
+ * of the schema.
+ */
+public class SchemaDispatcher<K> {
+
+    /**
+     * Handles the records of a schema.
+     */
+    @FunctionalInterface
+    public interface Handler<K> {
+
+        /**
+         * @param record the consumed record, its value being the raw bytes
+         * @param value the decoded value, null for a tombstone
+         */
+        void handle(ConsumerRecord<K, byte[]> record, GenericRecord value);
+    }
+
+    private static final int HEADER_SIZE = 1 + Long.BYTES;
+
+    private final RegistryRestClient client;
+    private final Map<Long, Function<Schema, Handler<K>>> byGlobalId = new HashMap<>();
+    private final Map<String, Function<Schema, Handler<K>>> byFullName = new HashMap<>();
+    private Handler<K> fallback = (record, value) -> { };
+
+    // Copy-on-write, filled on the first record of every global id.
+    private volatile Map<Long, Route<K>> routes = new HashMap<>();
+
+    /**
+     * @param client used to fetch the schemas of the global ids
+     */
+    public SchemaDispatcher(RegistryRestClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Handles the records of the schema with the given full name, all versions included.
+     */
+    public SchemaDispatcher<K> on(String fullName, Handler<K> handler) {
+        return on(fullName, schema -> handler);
+    }
+
+    /**
+     * Handles the records of the schema with the given full name, with a handler created for every version of the
+     * schema (i.e. every global id).
+     */
+    public SchemaDispatcher<K> on(String fullName, Function<Schema, Handler<K>> handlerFactory) {
+        byFullName.put(fullName, handlerFactory);
+        return this;
+    }
+
+    /**
+     * Handles the records written with the given global id, takes precedence over the handlers by full name.
+     */
+    public SchemaDispatcher<K> on(long globalId, Handler<K> handler) {
+        byGlobalId.put(globalId, schema -> handler);
+        return this;
+    }
+
+    /**
+     * Handles the records of the schemas without handler.
+     */
+    public SchemaDispatcher<K> fallback(Handler<K> handler) {
+        this.fallback = handler;
+        return this;
+    }
+
+    /**
+     * Dispatches all the given records, in order.
+     */
+    public void dispatch(ConsumerRecords<K, byte[]> records) {
+        for (ConsumerRecord<K, byte[]> record : records) {
+            dispatch(record);
+        }
+    }
+
+    /**
+     * Decodes the given record and passes it to the handler of its schema.
+     */
+    public void dispatch(ConsumerRecord<K, byte[]> record) {
+        final byte[] bytes = record.value();
+        if (bytes == null) {
+            fallback.handle(record, null);
+            return;
+        }
+        if (bytes.length < HEADER_SIZE || bytes[0] != AbstractKafkaSerDe.MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte at offset " + record.offset() + " of " + record.topic());
+        }
+        final long globalId = ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+        Route<K> route = routes.get(globalId);
+        if (route == null) {
+            route = resolve(globalId);
+        }
+        final GenericRecord value;
+        try {
+            value = route.reader.read(null, DecoderFactory.get().binaryDecoder(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, null));
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot decode record at offset " + record.offset() + " of " + record.topic(), e);
+        }
+        route.handler.handle(record, value);
+    }
+
+    private synchronized Route<K> resolve(long globalId) {
+        Route<K> route = routes.get(globalId);
+        if (route != null) {
+            return route;
+        }
+        final Schema schema;
+        try (InputStream content = client.getArtifactByGlobalId(globalId)) {
+            schema = SchemaInterner.parse(new String(readAll(content), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new SerializationException("Cannot fetch the schema of global id " + globalId, e);
+        }
+        Function<Schema, Handler<K>> factory = byGlobalId.get(globalId);
+        if (factory == null) {
+            factory = byFullName.get(schema.getFullName());
+        }
+        route = new Route<>(new GenericDatumReader<>(schema), factory == null ? fallback : factory.apply(schema));
+        final Map<Long, Route<K>> copy = new HashMap<>(routes);
+        copy.put(globalId, route);
+        routes = copy;
+        return route;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Route<K> {
+
+        private final DatumReader<GenericRecord> reader;
+        private final Handler<K> handler;
+
+        private Route(DatumReader<GenericRecord> reader, Handler<K> handler) {
+            this.reader = reader;
+            this.handler = handler;
+        }
+    }
+
+}
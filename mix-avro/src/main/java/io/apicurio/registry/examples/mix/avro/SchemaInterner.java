@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * JVM wide cache of parsed Avro schemas, keyed by their 64-bit parsing canonical form fingerprint.
+ * <p>
+ * Identical schemas are parsed once and share a single {@link Schema} instance, whatever the formatting of their
+ * JSON, so that per-schema state can be looked up by identity instead of hashing the whole schema on every send.
+ * <p>
+ * The canonical form ignores docs, aliases, defaults and custom properties: a schema that has the fingerprint of an
+ * interned schema but is not equal to it is returned as parsed, and never replaces the interned one.
+ */
+public final class SchemaInterner {
+
+    private static final Map<Long, Schema> BY_FINGERPRINT = new ConcurrentHashMap<>();
+    // Fast path for the schema strings already seen, which avoids parsing them again just to fingerprint them.
+    private static final Map<String, Schema> BY_CONTENT = new ConcurrentHashMap<>();
+
+    private SchemaInterner() {
+    }
+
+    /**
+     * Parses the given schema, or returns the interned instance if an identical schema was already parsed.
+     */
+    public static Schema parse(String schemaContent) {
+        Schema schema = BY_CONTENT.get(schemaContent);
+        if (schema == null) {
+            // A new parser per schema, the parser remembers the named types it has seen.
+            schema = intern(new Schema.Parser().parse(schemaContent));
+            BY_CONTENT.putIfAbsent(schemaContent, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Returns the interned instance of the given schema, interning it if it is the first of its kind.
+     */
+    public static Schema intern(Schema schema) {
+        final long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+        final Schema interned = BY_FINGERPRINT.putIfAbsent(fingerprint, schema);
+        if (interned == null) {
+            return schema;
+        }
+        return interned == schema || interned.equals(schema) ? interned : schema;
+    }
+
+    /**
+     * @return number of interned schemas
+     */
+    public static int size() {
+        return BY_FINGERPRINT.size();
+    }
+
+}
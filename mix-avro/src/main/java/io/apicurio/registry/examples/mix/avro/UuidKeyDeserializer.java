@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.util.UUID;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads the {@link UUID} keys written by the {@link UuidKeySerializer}.
+ */
+public class UuidKeyDeserializer implements Deserializer<UUID> {
+
+    @Override
+    public UUID deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length != 16) {
+            throw new SerializationException("Invalid UUID key, " + data.length + " bytes instead of 16");
+        }
+        return new UUID(FixedKeySerializer.getLong(data, 0), FixedKeySerializer.getLong(data, 8));
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.util.UUID;
+
+/**
+ * Writes {@link UUID} keys as their 16 raw bytes (most significant bits first), instead of the 36 characters of
+ * their string form.  Read by the {@link UuidKeyDeserializer}.
+ */
+public class UuidKeySerializer extends FixedKeySerializer<UUID> {
+
+    public static final String SCHEMA = "{\"type\":\"fixed\",\"name\":\"Uuid\",\"namespace\":\"io.apicurio.registry.examples\",\"size\":16}";
+
+    public UuidKeySerializer() {
+        super(SCHEMA);
+    }
+
+    @Override
+    protected void write(UUID data, byte[] bytes) {
+        putLong(bytes, 0, data.getMostSignificantBits());
+        putLong(bytes, 8, data.getLeastSignificantBits());
+    }
+
+}
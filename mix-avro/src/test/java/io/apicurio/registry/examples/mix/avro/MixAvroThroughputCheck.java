@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.mix.avro;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.support.EmbeddedRegistry;
+import io.apicurio.registry.examples.support.InProcessPipe;
+import io.apicurio.registry.examples.support.ThroughputCheck;
+
+/**
+ * Offline throughput check of the {@link MixAvroExample}: its produce and consume flows run over an
+ * {@link InProcessPipe} against an {@link EmbeddedRegistry}, no Kafka broker or registry is needed.
+ * <p>
+ * Usage: MixAvroThroughputCheck [records] [minRecordsPerSecond], exits with 1 when the throughput is below the minimum.
+ * Run by the build with the "perf" profile.
+ */
+public class MixAvroThroughputCheck {
+
+    public static final void main(String [] args) throws Exception {
+        ThroughputCheck check = new ThroughputCheck(MixAvroExample.class.getSimpleName(), args, 4);
+        boolean passed;
+        try (EmbeddedRegistry registry = new EmbeddedRegistry().start()) {
+            InProcessPipe pipe = new InProcessPipe(10000);
+            Producer<Object, Object> producer = pipe.producer(MixAvroExample.createProducerConfig(registry.getUrl()));
+            Consumer<UUID, byte[]> consumer = pipe.consumer(MixAvroExample.createConsumerConfig());
+            SchemaDispatcher<UUID> dispatcher = MixAvroExample.createDispatcher(registry.getUrl(), false);
+            OffsetCommitManager commits = new OffsetCommitManager(consumer);
+            consumer.subscribe(Collections.singletonList(MixAvroExample.TOPIC_NAME), commits);
+            try {
+                passed = check.run(pipe,
+                        () -> {
+                            // The records are spread evenly over the four schemas, all on the same topic.
+                            int perSchema = check.getRecords() / 4;
+                            MixAvroExample.produceMessages(producer, MixAvroExample.TOPIC_NAME, MixAvroExample.SCHEMAV1, null, perSchema, 0);
+                            MixAvroExample.produceMessages(producer, MixAvroExample.TOPIC_NAME, MixAvroExample.SCHEMAV2, "extra greeting", perSchema, 0);
+                            MixAvroExample.produceMessages(producer, MixAvroExample.TOPIC_NAME, MixAvroExample.FAREWELLSCHEMAV1, null, perSchema, 0);
+                            MixAvroExample.produceMessages(producer, MixAvroExample.TOPIC_NAME, MixAvroExample.FAREWELLSCHEMAV2, "extra farewell", perSchema, 0);
+                        },
+                        () -> MixAvroExample.consumeMessages(consumer, commits, dispatcher, check.getRecords(), false));
+            } finally {
+                producer.close();
+                commits.close();
+                consumer.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,171 @@
+package io.apicurio.registry.examples;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.examples.util.ArtifactArchive;
+import io.apicurio.registry.examples.util.RegistryHttpTransport;
+import io.apicurio.registry.rest.beans.ArtifactMetaData;
+import io.apicurio.registry.rest.beans.IfExistsType;
+import io.apicurio.registry.types.ArtifactType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk tool that exports the latest content of all the artifacts of a registry to a local {@link ArtifactArchive}, or
+ * imports an archive into a registry, with bounded parallelism.
+ * <p>
+ * Only the latest version of every artifact is copied: the version history, the metadata (name, description, labels,
+ * state) and the artifact and global rules are not, so this seeds a registry with the current schemas rather than
+ * mirroring it.
+ * <p>
+ * Runs can be interrupted and resumed: the export skips the artifacts whose version is already in the archive
+ * manifest, the import skips the artifacts whose content hash is already in the import checkpoint or matches the
+ * latest content of the target registry.
+ * <p>
+ * Usage: BulkArtifactTool export|import registryUrl archiveDir [parallelism]
+ */
+public class BulkArtifactTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkArtifactTool.class);
+
+    private final RegistryRestClient service;
+    private final ArtifactArchive archive;
+    private final int parallelism;
+
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BulkArtifactTool(RegistryRestClient service, ArtifactArchive archive, int parallelism) {
+        this.service = service;
+        this.archive = archive;
+        this.parallelism = parallelism;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 3 || !("export".equals(args[0]) || "import".equals(args[0]))) {
+            System.err.println("Usage: BulkArtifactTool export|import registryUrl archiveDir [parallelism]");
+            System.exit(1);
+        }
+        final int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        final RegistryRestClient service = RegistryHttpTransport.production()
+                .concurrency(parallelism * 2, parallelism * 2)
+                .createClient(args[1]);
+
+        try (ArtifactArchive archive = new ArtifactArchive(Paths.get(args[2]))) {
+            final BulkArtifactTool tool = new BulkArtifactTool(service, archive, parallelism);
+            if ("export".equals(args[0])) {
+                tool.exportAll();
+            } else {
+                tool.importAll();
+            }
+        }
+
+        //TODO remove with the release of the closeable version of the registry
+        System.exit(0);
+    }
+
+    /**
+     * Exports the latest version of every artifact of the registry into the archive.
+     */
+    public void exportAll() throws Exception {
+        final Map<String, ArtifactArchive.Entry> exported = archive.readManifest();
+        final List<String> artifactIds = service.listArtifacts();
+        LOGGER.info("=====> Exporting {} artifacts ({} already in the archive)", artifactIds.size(), exported.size());
+
+        run("export", artifactIds, artifactId -> {
+            final ArtifactMetaData metaData = service.getArtifactMetaData(artifactId);
+            final ArtifactArchive.Entry previous = exported.get(artifactId);
+            if (previous != null && previous.getVersion() == metaData.getVersion()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            final String sha256 = archive.writeContent(artifactId, service.getLatestArtifact(artifactId));
+            archive.appendManifest(new ArtifactArchive.Entry(artifactId, metaData.getType().name(), metaData.getVersion(), sha256));
+            transferred.incrementAndGet();
+        });
+    }
+
+    /**
+     * Imports every artifact of the archive into the registry, creating a new version when the content changed.
+     */
+    public void importAll() throws Exception {
+        final Map<String, ArtifactArchive.Entry> entries = archive.readManifest();
+        final Map<String, String> imported = archive.readImportCheckpoint();
+        LOGGER.info("=====> Importing {} artifacts ({} already imported)", entries.size(), imported.size());
+
+        run("import", new ArrayList<>(entries.keySet()), artifactId -> {
+            final ArtifactArchive.Entry entry = entries.get(artifactId);
+            if (entry.getSha256().equals(imported.get(artifactId)) || entry.getSha256().equals(targetSha256(artifactId))) {
+                archive.appendImportCheckpoint(artifactId, entry.getSha256());
+                skipped.incrementAndGet();
+                return;
+            }
+            try (InputStream content = archive.openContent(artifactId)) {
+                service.createArtifact(artifactId, ArtifactType.valueOf(entry.getType()), IfExistsType.UPDATE, content);
+            }
+            archive.appendImportCheckpoint(artifactId, entry.getSha256());
+            transferred.incrementAndGet();
+        });
+    }
+
+    /**
+     * @return sha-256 of the latest content of the artifact in the target registry, null if it does not exist
+     */
+    private String targetSha256(String artifactId) {
+        try {
+            return ArtifactArchive.sha256(service.getLatestArtifact(artifactId));
+        } catch (Exception e) {
+            // Not found (or not readable), the import will create it.
+            return null;
+        }
+    }
+
+    private void run(String operation, List<String> artifactIds, ArtifactTask task) throws InterruptedException {
+        // Bounded queue + caller runs: the listing is never turned into tens of thousands of queued tasks.
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        final long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> report(operation, artifactIds.size(), start), 5, 5, TimeUnit.SECONDS);
+
+        for (String artifactId : artifactIds) {
+            executor.execute(() -> {
+                try {
+                    task.run(artifactId);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    LOGGER.warn("=====> Failed to {} artifact {}: {}", operation, artifactId, e.toString());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        reporter.shutdownNow();
+        report(operation, artifactIds.size(), start);
+    }
+
+    private void report(String operation, int total, long start) {
+        final double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        final long processed = transferred.get() + skipped.get() + failed.get();
+        LOGGER.info("=====> {}: {}/{} artifacts ({} transferred, {} unchanged, {} failed), {} artifacts/s", operation,
+                processed, total, transferred.get(), skipped.get(), failed.get(), String.format("%.1f", processed / seconds));
+    }
+
+    @FunctionalInterface
+    private interface ArtifactTask {
+        void run(String artifactId) throws Exception;
+    }
+}
@@ -0,0 +1,88 @@
+package io.apicurio.registry.examples;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.util.ConditionalCacheInterceptor;
+import io.apicurio.registry.examples.util.RegistryDemoUtil;
+import io.apicurio.registry.types.ArtifactType;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Demo app that shows how to avoid downloading unchanged artifacts again using conditional requests.
+ * <p>
+ * 1) Register a new schema in the Registry.
+ * 2) Fetch the content of the newly created schema several times, revalidating the cached response.
+ * 3) Update the schema, which invalidates its cached responses, and fetch it again.
+ * 4) Delete the schema.
+ * <p>
+ * The content is fetched rather than the metadata, which the registry sends without validators.  Against a registry
+ * that sends no validators on the content either, every fetch is counted as a miss.
+ */
+public class CachingClientDemo {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingClientDemo.class);
+
+    private static final RegistryRestClient service;
+
+    private static final ConditionalCacheInterceptor cache = new ConditionalCacheInterceptor(1024, 256 * 1024);
+
+    static {
+        // Create a Service Registry client
+        final String registryUrl = "http://localhost:8080/api/";
+
+        final OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(cache)
+                .build();
+
+        service = RegistryRestClientFactory.create(registryUrl, httpClient);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        // Register the JSON Schema schema in the Apicurio registry.
+        final String artifactId = UUID.randomUUID().toString();
+
+        RegistryDemoUtil.createSchemaInServiceRegistry(service, artifactId, Constants.SCHEMA);
+
+        //Wait for the artifact to be available.
+        RegistryDemoUtil.waitForArtifact(service, artifactId, Duration.ofSeconds(10));
+
+        // The first fetch downloads the content, the next ones are revalidated with a conditional request.
+        for (int i = 0; i < 5; i++) {
+            fetchContent(artifactId);
+        }
+        LOGGER.info("=====> Cache statistics: {}", cache);
+
+        // The update invalidates the cached responses of the artifact, the next fetch downloads the new version.
+        service.updateArtifact(artifactId, ArtifactType.JSON, new ByteArrayInputStream((Constants.SCHEMA + "\n").getBytes(StandardCharsets.UTF_8)));
+        fetchContent(artifactId);
+        LOGGER.info("=====> Cache statistics after the update: {}", cache);
+
+        RegistryDemoUtil.deleteSchema(service, artifactId);
+
+        //TODO remove with the release of the closeable version of the registry
+        System.exit(0);
+    }
+
+    private static void fetchContent(String artifactId) throws IOException {
+        try (InputStream content = service.getLatestArtifact(artifactId)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            LOGGER.info("=====> Fetched {} bytes of content for artifact {}", bytes.size(), artifactId);
+        }
+    }
+}
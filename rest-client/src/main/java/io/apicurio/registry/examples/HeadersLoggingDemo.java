@@ -2,21 +2,21 @@ package io.apicurio.registry.examples;
 
 import io.apicurio.registry.client.RegistryRestClient;
 import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.util.MetricsInterceptor;
 import io.apicurio.registry.examples.util.RegistryDemoUtil;
-import okhttp3.Headers;
-import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.util.UUID;
 
 /**
  * Simple demo app that shows how to use the client and improve the logs.
  * <p>
+ * Request and response headers are captured by the {@link MetricsInterceptor} and logged asynchronously, so the
+ * calling thread never waits on the logger. Raise the sample rate to keep the capture on under load.
+ * <p>
  * 1) Register a new schema in the Registry.
  * 2) Fetch the newly created schema.
  * 3) Delete the schema.
@@ -29,12 +29,15 @@ public class HeadersLoggingDemo {
 
     private static final RegistryRestClient service;
 
+    // Capture the headers of every call, a production client would sample e.g. one call every 1000.
+    private static final MetricsInterceptor metrics = new MetricsInterceptor(1, 1024);
+
     static {
         // Create a Service Registry client
         final String registryUrl = "http://localhost:8080/api/";
 
         final OkHttpClient httpClient = new OkHttpClient.Builder()
-                .addInterceptor(new HeadersInterceptor())
+                .addInterceptor(metrics)
                 .build();
 
         service = RegistryRestClientFactory.create(registryUrl, httpClient);
@@ -48,36 +51,17 @@ public class HeadersLoggingDemo {
         RegistryDemoUtil.createSchemaInServiceRegistry(service, artifactId, Constants.SCHEMA);
 
         //Wait for the artifact to be available.
-        Thread.sleep(1000);
+        RegistryDemoUtil.waitForArtifact(service, artifactId, Duration.ofSeconds(10));
 
         RegistryDemoUtil.getSchemaFromRegistry(service, artifactId);
 
         RegistryDemoUtil.deleteSchema(service, artifactId);
 
+        // Flush the pending header captures before reporting.
+        metrics.close();
+        LOGGER.info(metrics.report());
+
         //TODO remove with the release of the closeable version of the registry
         System.exit(0);
     }
-
-    private static final class HeadersInterceptor implements Interceptor {
-
-        @Override
-        public Response intercept(Chain chain) throws IOException {
-
-            final Request request = chain.request();
-            final Headers requestHeaders = request.headers();
-
-            for (String name : requestHeaders.names()) {
-                LOGGER.info("Request header with name: {} and value: {}", name, requestHeaders.get(name));
-            }
-
-            final Response response = chain.proceed(request);
-            final Headers responseHeaders = response.headers();
-
-            for (String name : responseHeaders.names()) {
-                LOGGER.info("Response header with name: {} and value: {}", name, responseHeaders.get(name));
-            }
-
-            return response;
-        }
-    }
 }
@@ -4,6 +4,7 @@ import io.apicurio.registry.client.RegistryRestClient;
 import io.apicurio.registry.client.RegistryRestClientFactory;
 import io.apicurio.registry.examples.util.RegistryDemoUtil;
 
+import java.time.Duration;
 import java.util.UUID;
 
 
@@ -34,7 +35,7 @@ public class SimpleRegistryDemo {
         RegistryDemoUtil.createSchemaInServiceRegistry(service, artifactId, Constants.SCHEMA);
 
         //Wait for the artifact to be available.
-        Thread.sleep(1000);
+        RegistryDemoUtil.waitForArtifact(service, artifactId, Duration.ofSeconds(10));
 
         RegistryDemoUtil.getSchemaFromRegistry(service, artifactId);
 
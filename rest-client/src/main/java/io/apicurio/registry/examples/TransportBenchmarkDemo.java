@@ -0,0 +1,144 @@
+package io.apicurio.registry.examples;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.util.RegistryDemoUtil;
+import io.apicurio.registry.examples.util.RegistryHttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark app that compares the artifact metadata fetch rate of the default client transport with the
+ * {@link RegistryHttpTransport} production profile when many callers share one client.
+ * <p>
+ * 1) Register a new schema in the Registry.
+ * 2) Fetch its metadata from many concurrent callers, first with the default transport, then with the tuned one.
+ * 3) Delete the schema.
+ * <p>
+ * Usage: TransportBenchmarkDemo [registryUrl] [callers] [seconds]
+ */
+public class TransportBenchmarkDemo {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransportBenchmarkDemo.class);
+
+    public static void main(String[] args) throws Exception {
+
+        final String registryUrl = args.length > 0 ? args[0] : "http://localhost:8080/api/";
+        final int callers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        final RegistryRestClient defaultClient = RegistryRestClientFactory.create(registryUrl);
+        final RegistryRestClient tunedClient = RegistryHttpTransport.production().createClient(registryUrl);
+
+        final String artifactId = UUID.randomUUID().toString();
+        RegistryDemoUtil.createSchemaInServiceRegistry(defaultClient, artifactId, Constants.SCHEMA);
+
+        //Wait for the artifact to be available.
+        RegistryDemoUtil.waitForArtifact(defaultClient, artifactId, Duration.ofSeconds(10));
+
+        // Warm up both clients so that connection setup is not measured.
+        run(defaultClient, artifactId, callers, 2);
+        run(tunedClient, artifactId, callers, 2);
+
+        final Result defaultResult = run(defaultClient, artifactId, callers, seconds);
+        final Result tunedResult = run(tunedClient, artifactId, callers, seconds);
+
+        LOGGER.info("=====> Default transport: {}", defaultResult);
+        LOGGER.info("=====> Tuned transport:   {}", tunedResult);
+
+        RegistryDemoUtil.deleteSchema(defaultClient, artifactId);
+
+        //TODO remove with the release of the closeable version of the registry
+        System.exit(0);
+    }
+
+    private static Result run(RegistryRestClient client, String artifactId, int callers, int seconds) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        final CountDownLatch done = new CountDownLatch(callers);
+        final AtomicLong errors = new AtomicLong();
+        final long[][] latencies = new long[callers][];
+        final int[] counts = new int[callers];
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int i = 0; i < callers; i++) {
+            final int caller = i;
+            executor.execute(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) {
+                        try {
+                            client.getArtifactMetaData(artifactId);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - now;
+                    }
+                } finally {
+                    latencies[caller] = samples;
+                    counts[caller] = count;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        final long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < callers; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+        return new Result(callers, total / (double) seconds, percentile(all, 0.50), percentile(all, 0.99), errors.get());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static final class Result {
+
+        private final int callers;
+        private final double rate;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long errors;
+
+        private Result(int callers, double rate, long p50Nanos, long p99Nanos, long errors) {
+            this.callers = callers;
+            this.rate = rate;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.errors = errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d callers, %.1f metadata fetches/s, p50 %.2f ms, p99 %.2f ms, %d errors",
+                    callers, rate, p50Nanos / 1_000_000.0, p99Nanos / 1_000_000.0, errors);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package io.apicurio.registry.examples.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Client side adaptive concurrency limiter for the registry calls (AIMD on the observed latency).
+ * <p>
+ * Every successful call faster than {@code tolerance} times the lowest latency observed so far for its operation
+ * grows the limit additively (by about one per round trip), while a slow call or an overload failure (I/O error,
+ * timeout, HTTP 503 or 429) shrinks it multiplicatively.  The lowest latency is tracked per operation, as a
+ * registration is normally much slower than a metadata lookup and would otherwise always read as queueing. When the
+ * limit is reached, callers wait in a bounded queue until a permit is released or their deadline expires, and are
+ * then rejected with a {@link LimitExceededException}. This keeps a fleet of restarting clients from flooding the
+ * registry.
+ * <p>
+ * {@link #wrap(Class, Object)} applies the limiter to every call of an interface, e.g. a
+ * {@code RegistryRestClient}, the operation of a call being its method name. Calls returning a {@link CompletionStage}
+ * hold their permit until the stage completes.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int RTT_WINDOW = 500;
+    private static final String DEFAULT_OPERATION = "call";
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    private final int maxQueue;
+    private final long maxQueueWaitNanos;
+    private final Predicate<Throwable> overload;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private final Map<String, RttBaseline> baselines = new HashMap<>();
+    private long lastDecreaseNanos;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a limiter starting at 20 concurrent calls, between 1 and 200, that queues up to 1000 callers for at
+     * most 1 second.
+     */
+    public AdaptiveConcurrencyLimiter() {
+        this(20, 1, 200, 1000, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     * @param maxQueue max number of callers waiting for a permit
+     * @param maxQueueWait max time a caller waits for a permit
+     * @param unit unit of the max queue wait
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxQueueWait, TimeUnit unit) {
+        this(initialLimit, minLimit, maxLimit, maxQueue, maxQueueWait, unit, 0.9, 2.0, AdaptiveConcurrencyLimiter::isOverload);
+    }
+
+    /**
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     * @param maxQueue max number of callers waiting for a permit
+     * @param maxQueueWait max time a caller waits for a permit
+     * @param unit unit of the max queue wait
+     * @param backoffRatio the limit is multiplied by this ratio on a slow or overloaded call
+     * @param tolerance a call is slow when its latency is above tolerance times the lowest observed latency
+     * @param overload tells which failures are caused by an overloaded registry
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxQueueWait,
+                                      TimeUnit unit, double backoffRatio, double tolerance, Predicate<Throwable> overload) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxQueueWaitNanos = unit.toNanos(maxQueueWait);
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+        this.overload = overload;
+    }
+
+    /**
+     * Runs the call once a permit is available.
+     *
+     * @throws LimitExceededException if no permit became available within the max queue wait
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+        return call(DEFAULT_OPERATION, call);
+    }
+
+    /**
+     * Runs the call once a permit is available, its latency being compared with the lowest latency of the given
+     * operation.
+     *
+     * @throws LimitExceededException if no permit became available within the max queue wait
+     */
+    public <T> T call(String operation, Callable<T> call) throws Exception {
+        acquire(System.nanoTime() + maxQueueWaitNanos);
+        final long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return call.call();
+        } catch (Exception e) {
+            dropped = overload.test(e);
+            throw e;
+        } finally {
+            release(operation, System.nanoTime() - start, dropped);
+        }
+    }
+
+    /**
+     * Waits for a permit until the given deadline.
+     *
+     * @param deadlineNanos in {@link System#nanoTime()} time
+     * @throws LimitExceededException if the queue is full or the deadline expired
+     */
+    public void acquire(long deadlineNanos) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue) {
+                rejected.incrementAndGet();
+                throw new LimitExceededException("Registry client queue is full (" + maxQueue + " callers waiting)");
+            }
+            queued++;
+            try {
+                long remaining = deadlineNanos - System.nanoTime();
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new LimitExceededException("No registry client permit available within the deadline (limit " + (int) limit + ")");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new LimitExceededException("Interrupted while waiting for a registry client permit");
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit and adapts the limit.
+     *
+     * @param rttNanos latency of the call
+     * @param dropped true if the call failed because the registry is overloaded
+     */
+    public void release(long rttNanos, boolean dropped) {
+        release(DEFAULT_OPERATION, rttNanos, dropped);
+    }
+
+    /**
+     * Releases a permit and adapts the limit.
+     *
+     * @param operation the operation of the call, whose latency is compared with the lowest one of the operation
+     * @param rttNanos latency of the call
+     * @param dropped true if the call failed because the registry is overloaded
+     */
+    public void release(String operation, long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            final RttBaseline baseline = baselines.computeIfAbsent(operation, o -> new RttBaseline());
+            if (!dropped) {
+                baseline.update(rttNanos);
+            }
+            if (dropped || rttNanos > tolerance * baseline.minRttNanos) {
+                // Back off at most once per round trip, the calls already in flight saw the same congestion.
+                final long now = System.nanoTime();
+                if (now - lastDecreaseNanos > rttNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlight * 2 >= limit) {
+                // Only grow when the limit is actually used, otherwise it would drift up while idle.
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of callers waiting for a permit
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls rejected because no permit was available in time
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{limit=" + getLimit() + ", inFlight=" + getInFlight() + ", queued="
+                + getQueued() + ", rejected=" + getRejectedCount() + "}";
+    }
+
+    /**
+     * Applies the limiter to every call of the given interface.
+     *
+     * @param type interface implemented by the delegate
+     * @param delegate
+     */
+    public <T> T wrap(Class<T> type, T delegate) {
+        final InvocationHandler handler = (proxy, method, args) -> invoke(delegate, method, args);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private Object invoke(Object delegate, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(delegate, args);
+        }
+        acquire(System.nanoTime() + maxQueueWaitNanos);
+        final long start = System.nanoTime();
+        final Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            release(method.getName(), System.nanoTime() - start, overload.test(e.getCause()));
+            throw e.getCause();
+        } catch (Throwable e) {
+            release(method.getName(), System.nanoTime() - start, false);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            return ((CompletionStage<?>) result).whenComplete((value, error) ->
+                    release(method.getName(), System.nanoTime() - start, error != null && overload.test(error)));
+        }
+        release(method.getName(), System.nanoTime() - start, false);
+        return result;
+    }
+
+    /**
+     * Default overload detection: an I/O failure, a timeout, or a "service unavailable" (HTTP 503) or "too many
+     * requests" (HTTP 429) answer anywhere in the cause chain.
+     */
+    public static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof IOException || t instanceof UncheckedIOException || t instanceof TimeoutException) {
+                return true;
+            }
+            if (t instanceof WebApplicationException) {
+                final Response response = ((WebApplicationException) t).getResponse();
+                if (response != null && (response.getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()
+                        || response.getStatus() == Response.Status.TOO_MANY_REQUESTS.getStatusCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lowest latency of an operation, tracked over windows of samples so that it follows a registry whose latency
+     * permanently changed.
+     */
+    private static final class RttBaseline {
+
+        private long minRttNanos = Long.MAX_VALUE;
+        private long windowMinRttNanos = Long.MAX_VALUE;
+        private int windowSamples;
+
+        private void update(long rttNanos) {
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+            windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+            if (++windowSamples >= RTT_WINDOW) {
+                minRttNanos = windowMinRttNanos;
+                windowMinRttNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package io.apicurio.registry.examples.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local directory archive of the latest content of registry artifacts, used by the bulk import/export tool.  Older
+ * versions, metadata (name, description, labels, state) and rules are not archived.
+ * <p>
+ * Layout:
+ * <ul>
+ *   <li>{@code content/<encoded artifactId>}: latest content of the artifact</li>
+ *   <li>{@code manifest.tsv}: one line per exported artifact (id, type, version, sha-256 of the content)</li>
+ *   <li>{@code import.checkpoint}: one line per imported artifact (id, sha-256 of the imported content)</li>
+ * </ul>
+ * Both files are append only and flushed after every line, so they double as progress checkpoints: an interrupted
+ * run reads them back and only processes what is missing or changed (the last line of an artifact wins).  Lines that
+ * are not complete and valid (e.g. the last line of an interrupted run, cut in the middle of the hash) are ignored.
+ */
+public class ArtifactArchive implements AutoCloseable {
+
+    private static final String MANIFEST = "manifest.tsv";
+    private static final String IMPORT_CHECKPOINT = "import.checkpoint";
+
+    private final Path root;
+    private final Path contentDir;
+    private Writer manifestWriter;
+    private Writer checkpointWriter;
+
+    public ArtifactArchive(Path root) throws IOException {
+        this.root = root;
+        this.contentDir = root.resolve("content");
+        Files.createDirectories(contentDir);
+    }
+
+    /**
+     * Reads the manifest, keeping the last entry of every artifact.
+     */
+    public Map<String, Entry> readManifest() throws IOException {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        for (String[] fields : readLines(root.resolve(MANIFEST), 4)) {
+            if (isVersion(fields[2]) && isSha256(fields[3])) {
+                entries.put(fields[0], new Entry(fields[0], fields[1], Long.parseLong(fields[2]), fields[3]));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the import checkpoint as artifactId -> sha-256 of the imported content.
+     */
+    public Map<String, String> readImportCheckpoint() throws IOException {
+        final Map<String, String> imported = new LinkedHashMap<>();
+        for (String[] fields : readLines(root.resolve(IMPORT_CHECKPOINT), 2)) {
+            if (isSha256(fields[1])) {
+                imported.put(fields[0], fields[1]);
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Streams the content of an artifact into the archive, returning its sha-256.
+     *
+     * @param artifactId
+     * @param content the stream is closed by this method
+     */
+    public String writeContent(String artifactId, InputStream content) throws IOException {
+        final Path target = contentPath(artifactId);
+        final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        final MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(content, digest)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Opens the archived content of an artifact.
+     */
+    public InputStream openContent(String artifactId) throws IOException {
+        return Files.newInputStream(contentPath(artifactId));
+    }
+
+    /**
+     * Appends an exported artifact to the manifest.
+     */
+    public synchronized void appendManifest(Entry entry) throws IOException {
+        if (manifestWriter == null) {
+            manifestWriter = open(root.resolve(MANIFEST));
+        }
+        manifestWriter.write(entry.artifactId + "\t" + entry.type + "\t" + entry.version + "\t" + entry.sha256 + "\n");
+        manifestWriter.flush();
+    }
+
+    /**
+     * Appends an imported artifact to the import checkpoint.
+     */
+    public synchronized void appendImportCheckpoint(String artifactId, String sha256) throws IOException {
+        if (checkpointWriter == null) {
+            checkpointWriter = open(root.resolve(IMPORT_CHECKPOINT));
+        }
+        checkpointWriter.write(artifactId + "\t" + sha256 + "\n");
+        checkpointWriter.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (manifestWriter != null) {
+            manifestWriter.close();
+        }
+        if (checkpointWriter != null) {
+            checkpointWriter.close();
+        }
+    }
+
+    /**
+     * Computes the sha-256 of a stream, closing it.
+     */
+    public static String sha256(InputStream content) throws IOException {
+        final MessageDigest digest = sha256();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = content) {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private Path contentPath(String artifactId) {
+        try {
+            return contentDir.resolve(URLEncoder.encode(artifactId, StandardCharsets.UTF_8.name()));
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Writer open(Path file) throws IOException {
+        final OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static List<String[]> readLines(Path file, int fields) throws IOException {
+        final List<String[]> lines = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return lines;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] split = line.split("\t");
+                // A partially written last line (interrupted run) is ignored.
+                if (split.length == fields) {
+                    lines.add(split);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isSha256(String value) {
+        if (value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVersion(String value) {
+        try {
+            return Long.parseLong(value) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final char[] hex = "0123456789abcdef".toCharArray();
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = hex[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = hex[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * An exported artifact.
+     */
+    public static final class Entry {
+
+        private final String artifactId;
+        private final String type;
+        private final long version;
+        private final String sha256;
+
+        public Entry(String artifactId, String type, long version, String sha256) {
+            this.artifactId = artifactId;
+            this.type = type;
+            this.version = version;
+            this.sha256 = sha256;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+}
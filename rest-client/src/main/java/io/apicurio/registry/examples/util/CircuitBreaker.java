@@ -0,0 +1,321 @@
+package io.apicurio.registry.examples.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Circuit breaker for the registry calls.
+ * <p>
+ * After {@code failureThreshold} consecutive failed (or slower than {@code slowCallThreshold}) calls the circuit
+ * opens: calls are rejected immediately with a {@link CircuitOpenException} instead of piling up on a registry
+ * that does not answer. Once {@code openDuration} has elapsed the circuit is half-open and lets a single probe
+ * through, which closes the circuit if it succeeds or opens it again if it fails.
+ * <p>
+ * {@link #wrap(Class, Object)} applies the breaker to every call of an interface and serves reads
+ * ({@code get*}, {@code list*} and {@code search*} methods) from their last-known-good result while the circuit is
+ * open or the call fails, so only lookups that were never answered fail fast.  Async calls are not waited for:
+ * their outcome is reported, and their result cached, when their stage completes.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Circuit states.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile State state = State.CLOSED;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param slowCallThreshold calls slower than this count as failures
+     * @param openDuration time the circuit stays open before a probe is allowed
+     * @param unit unit of the durations
+     */
+    public CircuitBreaker(int failureThreshold, long slowCallThreshold, long openDuration, TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = unit.toNanos(slowCallThreshold);
+        this.openNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * Checks whether a call can go through, switching an expired open circuit to half-open.
+     *
+     * @return true if the call is allowed, the caller must then report its outcome
+     */
+    public boolean tryAcquire() {
+        final State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt.get() < openNanos) {
+            return false;
+        }
+        // Open circuit past its duration, or half-open: only one probe at a time.
+        if (probing.compareAndSet(false, true)) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports the outcome of an allowed call.
+     *
+     * @param elapsedNanos duration of the call
+     * @param failed true if the call failed
+     */
+    public void onResult(long elapsedNanos, boolean failed) {
+        if (failed || elapsedNanos > slowCallNanos) {
+            if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                open();
+            }
+        } else {
+            consecutiveFailures.set(0);
+            state = State.CLOSED;
+        }
+        probing.set(false);
+    }
+
+    private void open() {
+        openedAt.set(System.nanoTime());
+        state = State.OPEN;
+    }
+
+    /**
+     * @return the current state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of calls rejected because the circuit was open
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return number of calls answered with a last-known-good result
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{state=" + state + ", rejected=" + getRejectedCount() + ", fallbacks=" + getFallbackCount() + "}";
+    }
+
+    /**
+     * Applies the breaker to every call of the given interface, serving reads from their last-known-good result
+     * when the circuit is open or the call fails.
+     * <p>
+     * Results that hold resources ({@link AutoCloseable}) are not cached, except {@link InputStream}s which are
+     * buffered so that they can be replayed.
+     *
+     * @param type interface implemented by the delegate
+     * @param delegate
+     */
+    public <T> T wrap(Class<T> type, T delegate) {
+        final Map<List<Object>, Object> lastKnownGood = new ConcurrentHashMap<>();
+        final InvocationHandler handler = (proxy, method, args) -> invoke(delegate, method, args, lastKnownGood);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private Object invoke(Object delegate, Method method, Object[] args, Map<List<Object>, Object> lastKnownGood) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(delegate, args);
+        }
+        final boolean read = isRead(method);
+        final List<Object> key = read ? key(method, args) : null;
+
+        if (!tryAcquire()) {
+            final Object cached = key == null ? null : lastKnownGood.get(key);
+            if (cached != null) {
+                fallbacks.incrementAndGet();
+                return replay(method, cached);
+            }
+            rejected.incrementAndGet();
+            return fail(method, new CircuitOpenException("Registry circuit is open, no cached result for " + method.getName()));
+        }
+
+        final long start = System.nanoTime();
+        final Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (Throwable e) {
+            return onFailure(method, e instanceof InvocationTargetException ? e.getCause() : e, start, key, lastKnownGood);
+        }
+        if (result instanceof CompletionStage) {
+            // The outcome of an async call drives the circuit once its stage completes, without blocking the caller.
+            final CompletableFuture<Object> answer = new CompletableFuture<>();
+            ((CompletionStage<?>) result).whenComplete((value, error) -> {
+                if (error == null) {
+                    answer.complete(onSuccess(value, start, key, lastKnownGood));
+                    return;
+                }
+                try {
+                    // A completed stage, with the last-known-good result or the error.
+                    final CompletionStage<?> fallback = (CompletionStage<?>) onFailure(method,
+                            error instanceof CompletionException ? error.getCause() : error, start, key, lastKnownGood);
+                    fallback.whenComplete((cached, failure) -> {
+                        if (failure == null) {
+                            answer.complete(cached);
+                        } else {
+                            answer.completeExceptionally(failure);
+                        }
+                    });
+                } catch (Throwable e) {
+                    answer.completeExceptionally(e);
+                }
+            });
+            return answer;
+        }
+        return onSuccess(result, start, key, lastKnownGood);
+    }
+
+    private Object onSuccess(Object result, long start, List<Object> key, Map<List<Object>, Object> lastKnownGood) {
+        onResult(System.nanoTime() - start, false);
+        if (key != null && result != null) {
+            if (result instanceof InputStream) {
+                final byte[] bytes;
+                try {
+                    bytes = toBytes((InputStream) result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                lastKnownGood.put(key, bytes);
+                return new ByteArrayInputStream(bytes);
+            }
+            if (!(result instanceof AutoCloseable)) {
+                lastKnownGood.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private Object onFailure(Method method, Throwable cause, long start, List<Object> key, Map<List<Object>, Object> lastKnownGood) throws Throwable {
+        if (!isFailure(cause)) {
+            // The registry answered (e.g. not found), this is not a reason to open the circuit.
+            onResult(System.nanoTime() - start, false);
+            return fail(method, cause);
+        }
+        onResult(System.nanoTime() - start, true);
+        final Object cached = key == null ? null : lastKnownGood.get(key);
+        if (cached != null) {
+            fallbacks.incrementAndGet();
+            return replay(method, cached);
+        }
+        return fail(method, cause);
+    }
+
+    /**
+     * Async calls report failures through their stage, sync calls throw.
+     */
+    private static Object fail(Method method, Throwable error) throws Throwable {
+        if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+            final CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(error);
+            return failed;
+        }
+        throw error;
+    }
+
+    private static Object replay(Method method, Object cached) {
+        if (InputStream.class.isAssignableFrom(method.getReturnType())) {
+            return new ByteArrayInputStream((byte[]) cached);
+        }
+        if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Every error counts as a failure, except the "not found" answers (HTTP 404) that the id strategies rely on.
+     */
+    private static boolean isFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof NotFoundException) {
+                return false;
+            }
+            if (t instanceof WebApplicationException) {
+                final Response response = ((WebApplicationException) t).getResponse();
+                if (response != null && response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRead(Method method) {
+        final String name = method.getName();
+        if (!(name.startsWith("get") || name.startsWith("list") || name.startsWith("search"))) {
+            return false;
+        }
+        // Streamed request bodies cannot be part of a cache key.
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (InputStream.class.isAssignableFrom(parameter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Object> key(Method method, Object[] args) {
+        final Object[] key = new Object[(args == null ? 0 : args.length) + 1];
+        key[0] = method;
+        if (args != null) {
+            System.arraycopy(args, 0, key, 1, args.length);
+        }
+        return Arrays.asList(key);
+    }
+
+    private static byte[] toBytes(InputStream in) throws IOException {
+        try (InputStream data = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = data.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+}
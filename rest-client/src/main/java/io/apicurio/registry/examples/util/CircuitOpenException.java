@@ -0,0 +1,13 @@
+package io.apicurio.registry.examples.util;
+
+/**
+ * Thrown when a registry call is rejected by an open {@link CircuitBreaker} and no last-known-good result exists.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
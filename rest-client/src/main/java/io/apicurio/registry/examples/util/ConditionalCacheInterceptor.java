@@ -0,0 +1,326 @@
+package io.apicurio.registry.examples.util;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Http caching interceptor for the registry REST calls.
+ * <p>
+ * Successful GET responses carrying an {@code ETag} or a {@code Last-Modified} header are kept in a bounded, LRU
+ * ordered, in-memory cache. The next GET of the same URL is sent as a conditional request
+ * ({@code If-None-Match}/{@code If-Modified-Since}), so an unchanged artifact costs a 304 instead of the full body.
+ * The headers of a 304 (including a new {@code ETag}, {@code Last-Modified} or {@code Cache-Control}) replace the
+ * stored ones, as required by RFC 7234, so the next request is validated against the latest validators.
+ * Responses are served without any network call while they are fresh, either because the server sent a
+ * {@code Cache-Control: max-age} or because a default freshness has been configured.
+ * <p>
+ * Any other method (POST, PUT, DELETE) invalidates the cached responses of the artifact it writes to, i.e. of every
+ * URL with the same artifact id path segment ({@code /artifacts/{id}}, {@code /meta}, {@code /versions/...}), so
+ * the client never reads its own stale writes.  The artifact of a write without an artifact id in its path (e.g. a
+ * create) is taken from its {@code X-Registry-ArtifactId} header.  Writes also invalidate the responses that are not
+ * artifact specific (listings, searches, lookups by global id), whatever the artifact.
+ * <p>
+ * If the server does not send validators, every call is counted as a miss and nothing is cached.  The registry does
+ * not send them on every response, e.g. the artifact metadata comes without any, so the calls worth caching are
+ * the content fetches.
+ */
+public class ConditionalCacheInterceptor implements Interceptor {
+
+    private static final String ARTIFACT_ID_HEADER = "X-Registry-ArtifactId";
+
+    private final Map<String, Entry> cache;
+    private final long maxBodyBytes;
+    private final long defaultFreshnessMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache that always revalidates.
+     *
+     * @param maxEntries max number of cached responses
+     * @param maxBodyBytes responses with a bigger body are not cached
+     */
+    public ConditionalCacheInterceptor(int maxEntries, long maxBodyBytes) {
+        this(maxEntries, maxBodyBytes, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxEntries max number of cached responses
+     * @param maxBodyBytes responses with a bigger body are not cached
+     * @param defaultFreshness how long a response is served without revalidation when the server does not send a max-age
+     * @param unit unit of the default freshness
+     */
+    public ConditionalCacheInterceptor(int maxEntries, long maxBodyBytes, long defaultFreshness, TimeUnit unit) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.defaultFreshnessMillis = unit.toMillis(defaultFreshness);
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+        final Request request = chain.request();
+
+        if (!"GET".equals(request.method())) {
+            final String artifactId = artifactId(request.url());
+            invalidate(artifactId != null ? artifactId : request.header(ARTIFACT_ID_HEADER));
+            return chain.proceed(request);
+        }
+
+        final String key = request.url().toString();
+        final Entry cached = get(key);
+        final long now = System.currentTimeMillis();
+
+        if (cached != null && cached.expiresAtMillis > now) {
+            hits.incrementAndGet();
+            return cached.toResponse(request, now);
+        }
+
+        Request networkRequest = request;
+        if (cached != null) {
+            final Request.Builder conditional = request.newBuilder();
+            if (cached.etag != null) {
+                conditional.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                conditional.header("If-Modified-Since", cached.lastModified);
+            }
+            networkRequest = conditional.build();
+        }
+
+        final Response response = chain.proceed(networkRequest);
+
+        if (cached != null && response.code() == 304) {
+            revalidations.incrementAndGet();
+            response.close();
+            final long receivedAt = System.currentTimeMillis();
+            final Entry updated = cached.update(response.headers(), expiresAt(response, receivedAt));
+            put(key, updated);
+            return updated.toResponse(request, receivedAt);
+        }
+
+        misses.incrementAndGet();
+        return store(key, response);
+    }
+
+    private Response store(String key, Response response) throws IOException {
+        final String etag = response.header("ETag");
+        final String lastModified = response.header("Last-Modified");
+        final ResponseBody body = response.body();
+        final CacheControl cacheControl = response.cacheControl();
+
+        if (response.code() != 200 || body == null || cacheControl.noStore() || (etag == null && lastModified == null)) {
+            remove(key);
+            return response;
+        }
+        if (response.peekBody(maxBodyBytes + 1).contentLength() > maxBodyBytes) {
+            remove(key);
+            return response;
+        }
+
+        final MediaType contentType = body.contentType();
+        final byte[] bytes = body.bytes();
+        final Entry entry = new Entry(artifactId(response.request().url()), etag, lastModified, response.protocol(), response.code(), response.message(),
+                response.headers(), contentType, bytes, expiresAt(response, System.currentTimeMillis()));
+        put(key, entry);
+
+        return response.newBuilder()
+                .body(ResponseBody.create(contentType, bytes))
+                .build();
+    }
+
+    /**
+     * Merges the headers of a 304 into the stored ones: the end-to-end headers of the 304 win, except the ones
+     * describing the body, which the 304 does not carry.
+     */
+    private static Headers combine(Headers stored, Headers notModified) {
+        final Headers.Builder combined = new Headers.Builder();
+        for (int i = 0; i < stored.size(); i++) {
+            final String name = stored.name(i);
+            if (notModified.get(name) == null || isContentSpecific(name)) {
+                combined.add(name, stored.value(i));
+            }
+        }
+        for (int i = 0; i < notModified.size(); i++) {
+            final String name = notModified.name(i);
+            if (!isContentSpecific(name) && isEndToEnd(name)) {
+                combined.add(name, notModified.value(i));
+            }
+        }
+        return combined.build();
+    }
+
+    private static boolean isContentSpecific(String name) {
+        return "Content-Length".equalsIgnoreCase(name)
+                || "Content-Encoding".equalsIgnoreCase(name)
+                || "Content-Type".equalsIgnoreCase(name);
+    }
+
+    private static boolean isEndToEnd(String name) {
+        return !"Connection".equalsIgnoreCase(name)
+                && !"Keep-Alive".equalsIgnoreCase(name)
+                && !"Proxy-Authenticate".equalsIgnoreCase(name)
+                && !"Proxy-Authorization".equalsIgnoreCase(name)
+                && !"TE".equalsIgnoreCase(name)
+                && !"Trailers".equalsIgnoreCase(name)
+                && !"Transfer-Encoding".equalsIgnoreCase(name)
+                && !"Upgrade".equalsIgnoreCase(name);
+    }
+
+    private long expiresAt(Response response, long now) {
+        final int maxAgeSeconds = response.cacheControl().maxAgeSeconds();
+        if (maxAgeSeconds > 0) {
+            return now + TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+        }
+        return now + defaultFreshnessMillis;
+    }
+
+    private synchronized Entry get(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        cache.put(key, entry);
+    }
+
+    private synchronized void remove(String key) {
+        cache.remove(key);
+    }
+
+    /**
+     * Drops the responses of the given artifact and the ones that are not artifact specific.
+     */
+    private synchronized void invalidate(String artifactId) {
+        final Iterator<Entry> entries = cache.values().iterator();
+        while (entries.hasNext()) {
+            final Entry entry = entries.next();
+            if (entry.artifactId == null || entry.artifactId.equals(artifactId)) {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the (decoded) path segment following {@code artifacts}, or null if the url is not artifact specific
+     */
+    private static String artifactId(HttpUrl url) {
+        final List<String> segments = url.pathSegments();
+        final int artifacts = segments.indexOf("artifacts");
+        if (artifacts < 0 || artifacts + 1 >= segments.size() || segments.get(artifacts + 1).isEmpty()) {
+            return null;
+        }
+        return segments.get(artifacts + 1);
+    }
+
+    /**
+     * Drops every cached response.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return number of responses served from the cache without any network call
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of conditional requests answered with a 304
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return number of requests that downloaded the full response
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cached responses
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ConditionalCacheInterceptor{hits=" + getHits() + ", revalidations=" + getRevalidations()
+                + ", misses=" + getMisses() + ", entries=" + size() + "}";
+    }
+
+    private static final class Entry {
+
+        private final String artifactId;
+        private final String etag;
+        private final String lastModified;
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Headers headers;
+        private final MediaType contentType;
+        private final byte[] body;
+        private volatile long expiresAtMillis;
+
+        private Entry(String artifactId, String etag, String lastModified, Protocol protocol, int code, String message,
+                      Headers headers, MediaType contentType, byte[] body, long expiresAtMillis) {
+            this.artifactId = artifactId;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.protocol = protocol;
+            this.code = code;
+            this.message = message;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.body = body;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private Entry update(Headers notModified, long expiresAtMillis) {
+            final Headers combined = combine(headers, notModified);
+            return new Entry(artifactId, combined.get("ETag"), combined.get("Last-Modified"), protocol, code, message, combined,
+                    contentType, body, expiresAtMillis);
+        }
+
+        private Response toResponse(Request request, long now) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .headers(headers)
+                    .body(ResponseBody.create(contentType, body))
+                    .sentRequestAtMillis(now)
+                    .receivedResponseAtMillis(now)
+                    .build();
+        }
+    }
+}
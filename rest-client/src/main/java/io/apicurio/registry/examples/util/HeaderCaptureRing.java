@@ -0,0 +1,155 @@
+package io.apicurio.registry.examples.util;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer that logs captured request and response headers on a
+ * background thread.
+ * <p>
+ * Slots are preallocated and only hold references to the (immutable) OkHttp objects of the call, so publishing a
+ * capture does not allocate. When the ring is full the capture is dropped and counted instead of blocking the
+ * caller.
+ */
+class HeaderCaptureRing implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeaderCaptureRing.class);
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    private long head;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    HeaderCaptureRing(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.writer = new Thread(this::drainLoop, "registry-header-capture");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Publishes a capture, returns false if the ring is full.
+     */
+    boolean offer(String method, HttpUrl url, Headers requestHeaders, int code, Headers responseHeaders, long nanos) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            final long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        final Slot slot = slots[index];
+        slot.method = method;
+        slot.url = url;
+        slot.requestHeaders = requestHeaders;
+        slot.code = code;
+        slot.responseHeaders = responseHeaders;
+        slot.nanos = nanos;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * @return number of captures dropped because the ring was full
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        drain();
+    }
+
+    private synchronized boolean drain() {
+        boolean drained = false;
+        while (true) {
+            final int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return drained;
+            }
+            final Slot slot = slots[index];
+            log(slot);
+            slot.clear();
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            drained = true;
+        }
+    }
+
+    private static void log(Slot slot) {
+        LOGGER.info("{} {} -> {} in {} us", slot.method, slot.url, slot.code, TimeUnit.NANOSECONDS.toMicros(slot.nanos));
+        for (int i = 0; i < slot.requestHeaders.size(); i++) {
+            LOGGER.info("Request header with name: {} and value: {}", slot.requestHeaders.name(i), slot.requestHeaders.value(i));
+        }
+        if (slot.responseHeaders != null) {
+            for (int i = 0; i < slot.responseHeaders.size(); i++) {
+                LOGGER.info("Response header with name: {} and value: {}", slot.responseHeaders.name(i), slot.responseHeaders.value(i));
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after logging the pending captures.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Slot {
+
+        private String method;
+        private HttpUrl url;
+        private Headers requestHeaders;
+        private int code;
+        private Headers responseHeaders;
+        private long nanos;
+
+        private void clear() {
+            method = null;
+            url = null;
+            requestHeaders = null;
+            responseHeaders = null;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package io.apicurio.registry.examples.util;
+
+import io.apicurio.registry.client.RegistryRestClient;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Spreads the registry calls across several replicas and hedges slow reads.
+ * <p>
+ * Every call goes to the replica with the fewest outstanding requests. Reads ({@code get*}, {@code list*} and
+ * {@code search*} methods) that have not answered after the observed p95 latency are sent a second time to the next
+ * least loaded replica, and the first answer wins. Hedges are capped to a fraction of the calls (10% by default),
+ * so tail latency is cut without doubling the load on the registry. Writes, and reads sending a streamed body, are
+ * never hedged. The result of the call that loses the race is closed if it holds resources (e.g. an
+ * {@code InputStream}). The lifecycle methods ({@code close()} and {@code reset()}) are not balanced, they are
+ * called on every replica.
+ */
+public class HedgingLoadBalancer {
+
+    private static final int LATENCY_WINDOW = 1024;
+    private static final int RECOMPUTE_EVERY = 128;
+    // Result of the call that answered second, its actual result was closed.
+    private static final Object LOST = new Object();
+
+    private final ExecutorService executor;
+    private final double hedgePercentile;
+    private final double maxHedgeRatio;
+    private final long minHedgeDelayNanos;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long hedgeDelayNanos;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Hedges after the p95 latency (at least 1 ms), for at most 10% of the calls.
+     */
+    public HedgingLoadBalancer() {
+        this(Executors.newCachedThreadPool(daemonThreads()), 0.95, 0.1, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param executor runs the calls, must allow two concurrent calls per caller
+     * @param hedgePercentile latency percentile after which a read is hedged
+     * @param maxHedgeRatio max fraction of the calls that can be hedged
+     * @param minHedgeDelay lower bound of the hedge delay, and initial delay until enough latencies are observed
+     * @param unit unit of the min hedge delay
+     */
+    public HedgingLoadBalancer(ExecutorService executor, double hedgePercentile, double maxHedgeRatio, long minHedgeDelay, TimeUnit unit) {
+        this.executor = executor;
+        this.hedgePercentile = hedgePercentile;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.minHedgeDelayNanos = unit.toNanos(minHedgeDelay);
+        this.hedgeDelayNanos = Math.max(minHedgeDelayNanos, TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    /**
+     * Creates a registry client balancing its calls across the given endpoints.
+     *
+     * @param registryUrls comma separated list of registry urls
+     */
+    public RegistryRestClient createClient(String registryUrls) {
+        final List<RegistryRestClient> replicas = new ArrayList<>();
+        for (String url : parseUrls(registryUrls)) {
+            replicas.add(RegistryHttpTransport.production().createClient(url));
+        }
+        return wrap(RegistryRestClient.class, replicas);
+    }
+
+    /**
+     * Splits a comma separated list of registry urls.
+     */
+    public static List<String> parseUrls(String registryUrls) {
+        final List<String> urls = new ArrayList<>();
+        for (String url : registryUrls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No registry url in: " + registryUrls);
+        }
+        return urls;
+    }
+
+    /**
+     * Balances the calls of the given interface across the replicas.
+     *
+     * @param type interface implemented by the replicas
+     * @param replicas one client per registry replica
+     */
+    public <T> T wrap(Class<T> type, List<T> replicas) {
+        if (replicas.size() == 1) {
+            return replicas.get(0);
+        }
+        final List<Replica<T>> balanced = new ArrayList<>();
+        for (T replica : replicas) {
+            balanced.add(new Replica<>(replica));
+        }
+        final AtomicInteger roundRobin = new AtomicInteger();
+        final InvocationHandler handler = (proxy, method, args) -> invoke(balanced, roundRobin, method, args);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private <T> Object invoke(List<Replica<T>> replicas, AtomicInteger roundRobin, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(replicas.get(0).client, args);
+        }
+        if (isLifecycle(method)) {
+            return broadcast(replicas, method, args);
+        }
+        calls.incrementAndGet();
+        final Replica<T> primary = leastOutstanding(replicas, roundRobin.getAndIncrement(), null);
+        final long start = System.nanoTime();
+
+        if (!isRead(method)) {
+            final Object result = primary.call(method, args);
+            record(System.nanoTime() - start);
+            return result;
+        }
+
+        // The first call to answer claims the result, the result of the other one is closed if it holds resources.
+        final AtomicBoolean answered = new AtomicBoolean();
+        final ExecutorCompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        final Future<Object> first = completion.submit(() -> claim(primary.call(method, args), answered));
+        Future<Object> second = null;
+        try {
+            Future<Object> done = completion.poll(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            if (done == null && hedges.get() < maxHedgeRatio * calls.get()) {
+                hedges.incrementAndGet();
+                final Replica<T> backup = leastOutstanding(replicas, roundRobin.getAndIncrement(), primary);
+                second = completion.submit(() -> claim(backup.call(method, args), answered));
+            }
+            Throwable failure = null;
+            for (int pending = second == null ? 1 : 2; pending > 0; pending--) {
+                if (done == null) {
+                    done = completion.take();
+                }
+                try {
+                    final Object result = done.get();
+                    if (result != LOST) {
+                        record(System.nanoTime() - start);
+                        if (done == second) {
+                            hedgeWins.incrementAndGet();
+                        }
+                        return wrapResult(method, result);
+                    }
+                } catch (ExecutionException e) {
+                    // Wait for the other call, if any.
+                    failure = e.getCause();
+                }
+                done = null;
+            }
+            throw failure;
+        } finally {
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Calls the method on every replica, a failure does not keep the other replicas from being called.
+     */
+    private static <T> Object broadcast(List<Replica<T>> replicas, Method method, Object[] args) throws Throwable {
+        Throwable failure = null;
+        for (Replica<T> replica : replicas) {
+            try {
+                method.invoke(replica.client, args);
+            } catch (InvocationTargetException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    private static Object claim(Object result, AtomicBoolean answered) {
+        if (answered.compareAndSet(false, true)) {
+            return result;
+        }
+        if (result instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) result).close();
+            } catch (Exception e) {
+                // Nothing to do, the result is discarded.
+            }
+        }
+        return LOST;
+    }
+
+    private static Object wrapResult(Method method, Object result) {
+        return CompletionStage.class.isAssignableFrom(method.getReturnType()) ? CompletableFuture.completedFuture(result) : result;
+    }
+
+    private static <T> Replica<T> leastOutstanding(List<Replica<T>> replicas, int offset, Replica<T> excluded) {
+        Replica<T> best = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            final Replica<T> candidate = replicas.get(Math.floorMod(offset + i, replicas.size()));
+            if (candidate != excluded && (best == null || candidate.outstanding.get() < best.outstanding.get())) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private void record(long nanos) {
+        final long sample = samples.getAndIncrement();
+        latencies.set((int) (sample % LATENCY_WINDOW), nanos);
+        if (sample % RECOMPUTE_EVERY == RECOMPUTE_EVERY - 1) {
+            final int size = (int) Math.min(sample + 1, LATENCY_WINDOW);
+            final long[] window = new long[size];
+            for (int i = 0; i < size; i++) {
+                window[i] = latencies.get(i);
+            }
+            Arrays.sort(window);
+            hedgeDelayNanos = Math.max(minHedgeDelayNanos, window[(int) Math.min(size - 1, hedgePercentile * size)]);
+        }
+    }
+
+    private static boolean isLifecycle(Method method) {
+        return method.getParameterCount() == 0 && (method.getName().equals("close") || method.getName().equals("reset"));
+    }
+
+    private static boolean isRead(Method method) {
+        final String name = method.getName();
+        if (!(name.startsWith("get") || name.startsWith("list") || name.startsWith("search"))) {
+            return false;
+        }
+        // A streamed request body can only be sent once.
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (InputStream.class.isAssignableFrom(parameter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return current hedge delay, in nanoseconds
+     */
+    public long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    /**
+     * @return number of hedged calls
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return number of hedged calls answered first by the backup replica
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingLoadBalancer{calls=" + calls.get() + ", hedges=" + getHedgeCount() + ", hedgeWins="
+                + getHedgeWinCount() + ", hedgeDelay=" + TimeUnit.NANOSECONDS.toMicros(hedgeDelayNanos) + "us}";
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, "registry-hedging-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Replica<T> {
+
+        private final T client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Replica(T client) {
+            this.client = client;
+        }
+
+        private Object call(Method method, Object[] args) throws Exception {
+            outstanding.incrementAndGet();
+            try {
+                final Object result = method.invoke(client, args);
+                if (result instanceof CompletionStage) {
+                    return ((CompletionStage<?>) result).toCompletableFuture().get();
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                outstanding.decrementAndGet();
+            }
+        }
+    }
+}
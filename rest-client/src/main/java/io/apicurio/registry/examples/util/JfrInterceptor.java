@@ -0,0 +1,64 @@
+package io.apicurio.registry.examples.util;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Emits a {@link RegistryCallEvent} for every registry REST call, with the artifact id or global id of the call
+ * and the sizes of the bodies (as declared by their content length).
+ * <p>
+ * When the event is not enabled in the recording, or no recording is running, the interceptor only costs a check:
+ * the event is allocated on the stack and its fields are only computed when it is committed.  Added by the
+ * {@link RegistryHttpTransport} profiles.
+ */
+public class JfrInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final RegistryCallEvent event = new RegistryCallEvent();
+        if (!event.isEnabled()) {
+            return chain.proceed(chain.request());
+        }
+        final Request request = chain.request();
+        event.begin();
+        Response response = null;
+        try {
+            response = chain.proceed(request);
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = request.method();
+                event.path = request.url().encodedPath();
+                identify(event, request.url().pathSegments());
+                event.requestBytes = request.body() == null ? 0 : Math.max(0, request.body().contentLength());
+                if (response != null) {
+                    event.status = response.code();
+                    event.responseBytes = response.body() == null ? 0 : Math.max(0, response.body().contentLength());
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private static void identify(RegistryCallEvent event, List<String> segments) {
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if ("artifacts".equals(segments.get(i))) {
+                event.artifactId = segments.get(i + 1);
+                return;
+            }
+            if ("ids".equals(segments.get(i))) {
+                try {
+                    event.globalId = Long.parseLong(segments.get(i + 1));
+                } catch (NumberFormatException e) {
+                    // Not a global id path.
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.apicurio.registry.examples.util;
+
+/**
+ * Thrown when a registry call is rejected by the {@link AdaptiveConcurrencyLimiter}.
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
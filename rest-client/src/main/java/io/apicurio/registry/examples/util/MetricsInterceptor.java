@@ -0,0 +1,269 @@
+package io.apicurio.registry.examples.util;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.AtomicHistogram;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Low overhead metrics interceptor for the registry REST calls.
+ * <p>
+ * Records per endpoint latency histograms, status code counters and the bytes sent and received (as declared by
+ * the bodies content length). Endpoints are classified from the already parsed path segments. The latencies are
+ * recorded in microseconds into fixed size HdrHistogram {@link AtomicHistogram}s (2 significant digits, up to one
+ * minute), created on the first call of their endpoint and method; the other metrics are preallocated atomic
+ * counters, so recording does not allocate on the calling thread.
+ * <p>
+ * Header capture is optional: when enabled, one call every {@code headerSampleEvery} has its request and response
+ * headers published to a ring buffer and logged asynchronously by a background thread.
+ */
+public class MetricsInterceptor implements Interceptor, AutoCloseable {
+
+    /**
+     * Registry endpoints the calls are grouped by.
+     */
+    public enum Endpoint {
+        ARTIFACTS, ARTIFACT, ARTIFACT_META, ARTIFACT_RULES, ARTIFACT_STATE, ARTIFACT_VERSIONS, ARTIFACT_VERSION,
+        ARTIFACT_VERSION_META, IDS, IDS_META, SEARCH, OTHER
+    }
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    private static final Endpoint[] ENDPOINTS = Endpoint.values();
+    private static final int MAX_STATUS = 600;
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final AtomicReferenceArray<AtomicHistogram> latencies = new AtomicReferenceArray<>(ENDPOINTS.length * (METHODS.length + 1));
+    private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private final int headerSampleEvery;
+    private final AtomicLong calls = new AtomicLong();
+    private final HeaderCaptureRing headerCapture;
+
+    /**
+     * Creates the interceptor without header capture.
+     */
+    public MetricsInterceptor() {
+        this(0, 0);
+    }
+
+    /**
+     * @param headerSampleEvery capture the headers of one call every N, 0 disables the capture
+     * @param ringCapacity number of captures that can be waiting to be logged
+     */
+    public MetricsInterceptor(int headerSampleEvery, int ringCapacity) {
+        this.headerSampleEvery = headerSampleEvery;
+        this.headerCapture = headerSampleEvery > 0 ? new HeaderCaptureRing(ringCapacity) : null;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+        final Request request = chain.request();
+        final int histogram = endpoint(request.url().pathSegments()).ordinal() * (METHODS.length + 1) + method(request.method());
+        final RequestBody requestBody = request.body();
+        if (requestBody != null) {
+            final long length = requestBody.contentLength();
+            if (length > 0) {
+                bytesSent.addAndGet(length);
+            }
+        }
+
+        final long start = System.nanoTime();
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            final long elapsed = System.nanoTime() - start;
+            record(histogram, elapsed);
+            // Status 0 counts the calls that did not get any response.
+            statuses.incrementAndGet(0);
+            capture(request, 0, null, elapsed);
+            throw e;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        record(histogram, elapsed);
+        statuses.incrementAndGet(Math.min(response.code(), MAX_STATUS - 1));
+        final ResponseBody responseBody = response.body();
+        if (responseBody != null) {
+            final long length = responseBody.contentLength();
+            if (length > 0) {
+                bytesReceived.addAndGet(length);
+            }
+        }
+        capture(request, response.code(), response, elapsed);
+
+        return response;
+    }
+
+    private void record(int index, long elapsedNanos) {
+        AtomicHistogram histogram = latencies.get(index);
+        if (histogram == null) {
+            latencies.compareAndSet(index, null, new AtomicHistogram(MAX_LATENCY_MICROS, 2));
+            histogram = latencies.get(index);
+        }
+        // Slower calls are recorded as the max trackable latency.
+        histogram.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+    }
+
+    private void capture(Request request, int code, Response response, long elapsed) {
+        if (headerCapture != null && calls.getAndIncrement() % headerSampleEvery == 0) {
+            headerCapture.offer(request.method(), request.url(), request.headers(), code,
+                    response == null ? null : response.headers(), elapsed);
+        }
+    }
+
+    private static Endpoint endpoint(List<String> segments) {
+        int size = segments.size();
+        // A trailing slash shows up as an empty last segment.
+        if (size > 0 && segments.get(size - 1).isEmpty()) {
+            size--;
+        }
+        for (int i = 0; i < size; i++) {
+            final String segment = segments.get(i);
+            final int remaining = size - i - 1;
+            if ("artifacts".equals(segment)) {
+                return artifactEndpoint(segments, i, remaining);
+            }
+            if ("ids".equals(segment)) {
+                if (remaining == 1) {
+                    return Endpoint.IDS;
+                }
+                return remaining == 2 && "meta".equals(segments.get(i + 2)) ? Endpoint.IDS_META : Endpoint.OTHER;
+            }
+            if ("search".equals(segment)) {
+                return Endpoint.SEARCH;
+            }
+        }
+        return Endpoint.OTHER;
+    }
+
+    private static Endpoint artifactEndpoint(List<String> segments, int index, int remaining) {
+        switch (remaining) {
+            case 0:
+                return Endpoint.ARTIFACTS;
+            case 1:
+                return Endpoint.ARTIFACT;
+            case 2: {
+                final String child = segments.get(index + 2);
+                if ("meta".equals(child)) {
+                    return Endpoint.ARTIFACT_META;
+                }
+                if ("versions".equals(child)) {
+                    return Endpoint.ARTIFACT_VERSIONS;
+                }
+                if ("rules".equals(child)) {
+                    return Endpoint.ARTIFACT_RULES;
+                }
+                return "state".equals(child) ? Endpoint.ARTIFACT_STATE : Endpoint.OTHER;
+            }
+            case 3:
+                if ("versions".equals(segments.get(index + 2))) {
+                    return Endpoint.ARTIFACT_VERSION;
+                }
+                return "rules".equals(segments.get(index + 2)) ? Endpoint.ARTIFACT_RULES : Endpoint.OTHER;
+            case 4:
+                return "versions".equals(segments.get(index + 2)) && "meta".equals(segments.get(index + 4))
+                        ? Endpoint.ARTIFACT_VERSION_META : Endpoint.OTHER;
+            default:
+                return Endpoint.OTHER;
+        }
+    }
+
+    private static int method(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return METHODS.length;
+    }
+
+    /**
+     * @param endpoint
+     * @param method http method, any method other than GET, POST, PUT and DELETE is grouped under "OTHER"
+     * @return latency histogram of the given endpoint and method, in microseconds, or null if it was never called
+     */
+    public AbstractHistogram getLatency(Endpoint endpoint, String method) {
+        return latencies.get(endpoint.ordinal() * (METHODS.length + 1) + method(method));
+    }
+
+    /**
+     * @param status http status, 0 counts the calls that failed without a response
+     * @return number of calls that returned the given status
+     */
+    public long getStatusCount(int status) {
+        return statuses.get(Math.min(status, MAX_STATUS - 1));
+    }
+
+    /**
+     * @return number of request body bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return number of response body bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return number of header captures dropped because the logger could not keep up
+     */
+    public long getDroppedHeaderCaptures() {
+        return headerCapture == null ? 0 : headerCapture.getDropped();
+    }
+
+    /**
+     * Builds a human readable report of the non empty metrics.
+     */
+    public String report() {
+        final StringBuilder report = new StringBuilder("Registry client metrics:");
+        for (Endpoint endpoint : ENDPOINTS) {
+            for (int m = 0; m <= METHODS.length; m++) {
+                final AtomicHistogram histogram = latencies.get(endpoint.ordinal() * (METHODS.length + 1) + m);
+                if (histogram != null && histogram.getTotalCount() > 0) {
+                    report.append("\n  ").append(m < METHODS.length ? METHODS[m] : "OTHER").append(' ')
+                            .append(endpoint).append(": ").append(String.format("count=%d, mean=%.2f ms, p50=%.2f ms, p95=%.2f ms, p99=%.2f ms",
+                            histogram.getTotalCount(), histogram.getMean() / 1000.0, histogram.getValueAtPercentile(50) / 1000.0,
+                            histogram.getValueAtPercentile(95) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0));
+                }
+            }
+        }
+        for (int status = 0; status < MAX_STATUS; status++) {
+            final long count = statuses.get(status);
+            if (count > 0) {
+                report.append("\n  status ").append(status).append(": ").append(count);
+            }
+        }
+        report.append("\n  bytes sent: ").append(getBytesSent())
+                .append(", bytes received: ").append(getBytesReceived())
+                .append(", dropped header captures: ").append(getDroppedHeaderCaptures());
+        return report.toString();
+    }
+
+    /**
+     * Stops the header capture, logging the captures still waiting in the ring.
+     */
+    @Override
+    public void close() {
+        if (headerCapture != null) {
+            headerCapture.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.apicurio.registry.examples.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a registry REST call, emitted by the {@link JfrInterceptor}.
+ */
+@Name("io.apicurio.registry.RegistryCall")
+@Label("Registry Call")
+@Category({"Apicurio Registry", "Client"})
+@Description("A REST call to the registry")
+@StackTrace(false)
+public class RegistryCallEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Artifact Id")
+    String artifactId;
+
+    @Label("Global Id")
+    long globalId = -1;
+
+    @Label("Status")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+}
@@ -7,13 +7,29 @@ import io.apicurio.registry.types.ArtifactType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class RegistryDemoUtil {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RegistryDemoUtil.class);
 
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
     /**
      * Create the artifact in the registry (or update it if it already exists).
      *
@@ -72,4 +88,78 @@ public class RegistryDemoUtil {
             throw t;
         }
     }
+
+    /**
+     * Wait for the artifact to be available in the registry.
+     *
+     * @param artifactId
+     * @param timeout
+     * @return the observed propagation delay
+     */
+    public static Duration waitForArtifact(RegistryRestClient service, String artifactId, Duration timeout) throws InterruptedException {
+        return waitForArtifacts(service, Collections.singleton(artifactId), timeout).get(artifactId);
+    }
+
+    /**
+     * Wait for all the artifacts to be available in the registry.
+     * <p>
+     * The metadata of every pending artifact is polled in rounds separated by a jittered exponential backoff
+     * starting at 2 ms, so the call returns as soon as the last artifact is visible instead of sleeping a fixed
+     * amount of time.
+     *
+     * @param artifactIds
+     * @param timeout
+     * @return the observed propagation delay of every artifact
+     */
+    public static Map<String, Duration> waitForArtifacts(RegistryRestClient service, Collection<String> artifactIds, Duration timeout) throws InterruptedException {
+
+        LOGGER.info("---------------------------------------------------------");
+        LOGGER.info("=====> Waiting for {} artifact(s) to be available in the registry", artifactIds.size());
+
+        final Map<String, Duration> delays = new LinkedHashMap<>();
+        final Set<String> pending = new LinkedHashSet<>(artifactIds);
+        final long start = System.nanoTime();
+        final long deadline = start + timeout.toNanos();
+        long backoff = INITIAL_BACKOFF_NANOS;
+
+        while (true) {
+            final Iterator<String> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                final String artifactId = iterator.next();
+                if (isAvailable(service, artifactId)) {
+                    final Duration delay = Duration.ofNanos(System.nanoTime() - start);
+                    delays.put(artifactId, delay);
+                    iterator.remove();
+                    LOGGER.info("=====> Artifact {} available after {} ms", artifactId, delay.toMillis());
+                }
+            }
+            if (pending.isEmpty()) {
+                LOGGER.info("---------------------------------------------------------");
+                return delays;
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IllegalStateException("Artifacts not available after " + timeout.toMillis() + " ms: " + pending);
+            }
+            // Equal jitter: between half and all of the current backoff, never sleeping past the deadline.
+            final long sleep = Math.min(remaining, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            TimeUnit.NANOSECONDS.sleep(sleep);
+            backoff = Math.min(MAX_BACKOFF_NANOS, backoff * 2);
+        }
+    }
+
+    /**
+     * Only "not found" means that the artifact is not visible yet, any other error (e.g. authentication or
+     * configuration) is thrown instead of being retried until the timeout.
+     */
+    private static boolean isAvailable(RegistryRestClient service, String artifactId) {
+        try {
+            return service.getArtifactMetaData(artifactId) != null;
+        } catch (WebApplicationException e) {
+            if (e.getResponse() != null && e.getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return false;
+            }
+            throw e;
+        }
+    }
 }
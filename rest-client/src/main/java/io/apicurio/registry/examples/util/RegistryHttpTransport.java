@@ -0,0 +1,139 @@
+package io.apicurio.registry.examples.util;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Production transport profile for the {@link RegistryRestClient}.
+ * <p>
+ * {@link RegistryRestClientFactory#create(String)} uses the OkHttp defaults (5 idle connections, 64 concurrent
+ * calls, HTTP/1.1 for plain text endpoints). This profile sizes the connection pool and the dispatcher for many
+ * concurrent callers, negotiates HTTP/2 where the server supports it and bounds the number of in-flight calls.
+ * <p>
+ * The registry client enqueues its calls ({@code Call.enqueue}) and waits for their result, so every call goes
+ * through the dispatcher: the in-flight bound is the one of the dispatcher ({@link #concurrency}), the calls beyond
+ * it wait in the dispatcher queue.  Every call is also reported to Flight Recorder, see the {@link JfrInterceptor}.
+ */
+public class RegistryHttpTransport {
+
+    private int maxIdleConnections = 32;
+    private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+    private int maxRequests = 256;
+    private int maxRequestsPerHost = 128;
+    private boolean http2PriorKnowledge = false;
+    private long pingIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+    private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private long readTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private long writeTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Creates the transport profile with the production defaults.
+     */
+    public static RegistryHttpTransport production() {
+        return new RegistryHttpTransport();
+    }
+
+    /**
+     * @param maxIdleConnections number of idle connections kept in the pool
+     * @param keepAlive how long an idle connection is kept before being evicted
+     * @param unit unit of the keep alive
+     */
+    public RegistryHttpTransport connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveMillis = unit.toMillis(keepAlive);
+        return this;
+    }
+
+    /**
+     * @param maxRequests max number of in-flight calls
+     * @param maxRequestsPerHost max number of in-flight calls to a single registry host
+     */
+    public RegistryHttpTransport concurrency(int maxRequests, int maxRequestsPerHost) {
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    /**
+     * Use cleartext HTTP/2 (h2c) without upgrade. Only enable it when the registry is known to speak HTTP/2 on a
+     * plain text port, TLS endpoints negotiate HTTP/2 through ALPN regardless of this flag.
+     *
+     * @param http2PriorKnowledge
+     */
+    public RegistryHttpTransport http2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+        return this;
+    }
+
+    /**
+     * @param pingInterval interval of the HTTP/2 keep alive pings, 0 disables them
+     * @param unit unit of the ping interval
+     */
+    public RegistryHttpTransport pingInterval(long pingInterval, TimeUnit unit) {
+        this.pingIntervalMillis = unit.toMillis(pingInterval);
+        return this;
+    }
+
+    /**
+     * @param connect connect timeout
+     * @param read read timeout
+     * @param write write timeout
+     * @param unit unit of the timeouts
+     */
+    public RegistryHttpTransport timeouts(long connect, long read, long write, TimeUnit unit) {
+        this.connectTimeoutMillis = unit.toMillis(connect);
+        this.readTimeoutMillis = unit.toMillis(read);
+        this.writeTimeoutMillis = unit.toMillis(write);
+        return this;
+    }
+
+    /**
+     * Creates a builder configured with this profile, so that interceptors can be added before building the client.
+     */
+    public OkHttpClient.Builder newBuilder() {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .addInterceptor(new JfrInterceptor())
+                .pingInterval(pingIntervalMillis, TimeUnit.MILLISECONDS)
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true);
+
+        if (http2PriorKnowledge) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        } else {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        }
+        return builder;
+    }
+
+    /**
+     * Creates the http client for this profile.
+     */
+    public OkHttpClient build() {
+        return newBuilder().build();
+    }
+
+    /**
+     * Creates a registry client using this profile.
+     *
+     * @param registryUrl
+     */
+    public RegistryRestClient createClient(String registryUrl) {
+        return RegistryRestClientFactory.create(registryUrl, build());
+    }
+}
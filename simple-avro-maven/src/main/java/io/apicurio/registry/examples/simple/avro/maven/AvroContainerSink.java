@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Archives consumed records into Avro object container files, for replay and analytics.
+ * <p>
+ * The records are appended to the current file, which is rolled when it reaches the max size or age, or when the
+ * schema of the records changes (a container file has a single schema).  The schema check is an identity check in
+ * the common case, as the deserializer hands out the same {@link Schema} instance for every record of a global id.
+ * Files are written through a {@link FileChannel} under a {@code .avro.tmp} name, and renamed to {@code .avro} once
+ * complete, so that readers never see a partial file.  A file is forced to disk before it is renamed, the records
+ * of the completed files ({@link #getArchivedRecordCount()}) are thus durable and their offsets can be committed;
+ * the records of the current file are not, they are only buffered.  A {@code .avro.tmp} file left by a crash holds
+ * records that were not archived as far as the consumer knows, they are consumed again and the file can be deleted.
+ * <p>
+ * Not thread safe, meant to be used by the consumer thread.
+ */
+public class AvroContainerSink implements Closeable {
+
+    private static final long DEFAULT_MAX_FILE_BYTES = 128L * 1024 * 1024;
+    private static final long DEFAULT_MAX_FILE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int SYNC_INTERVAL = 256 * 1024;
+
+    private final Path directory;
+    private final String prefix;
+    private final CodecFactory codec;
+    private final long maxFileBytes;
+    private final long maxFileNanos;
+
+    private Schema schema;
+    private DataFileWriter<GenericRecord> writer;
+    private FileChannel channel;
+    private CountingOutputStream out;
+    private Path file;
+    private long openedAt;
+    private int sequence;
+
+    private long records;
+    private long archivedRecords;
+    private long fileRecords;
+    private long bytes;
+    private int files;
+
+    /**
+     * Rolls files of 128 MB or 10 minutes, compressed with deflate (level 1).
+     */
+    public AvroContainerSink(Path directory, String prefix) {
+        this(directory, prefix, CodecFactory.deflateCodec(1), DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param directory where the files are written
+     * @param prefix of the file names
+     * @param codec compression codec of the blocks, e.g. {@code CodecFactory.fromString("snappy")}
+     * @param maxFileBytes size after which a file is rolled
+     * @param maxFileAge age after which a file is rolled
+     * @param unit unit of the max age
+     */
+    public AvroContainerSink(Path directory, String prefix, CodecFactory codec, long maxFileBytes, long maxFileAge, TimeUnit unit) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.codec = codec;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileNanos = unit.toNanos(maxFileAge);
+    }
+
+    /**
+     * Appends a record to the current file, rolling it first if needed.
+     */
+    public void write(GenericRecord record) throws IOException {
+        final Schema recordSchema = record.getSchema();
+        if (writer == null || (recordSchema != schema && !recordSchema.equals(schema))) {
+            roll(recordSchema);
+        } else if (out.count >= maxFileBytes || System.nanoTime() - openedAt >= maxFileNanos) {
+            roll(schema);
+        }
+        writer.append(record);
+        records++;
+        fileRecords++;
+    }
+
+    /**
+     * Closes the current file if it is older than the max age, to be called when no record was consumed for a while.
+     */
+    public void rollIfExpired() throws IOException {
+        if (writer != null && System.nanoTime() - openedAt >= maxFileNanos) {
+            complete();
+        }
+    }
+
+    private void roll(Schema newSchema) throws IOException {
+        complete();
+        Files.createDirectories(directory);
+        final String name = prefix + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + sequence++ + ".avro";
+        file = directory.resolve(name);
+        channel = FileChannel.open(Paths.get(file + ".tmp"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // DataFileWriter buffers whole blocks, so the channel gets large writes.
+        out = new CountingOutputStream(Channels.newOutputStream(channel));
+        writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(newSchema));
+        writer.setCodec(codec);
+        writer.setSyncInterval(SYNC_INTERVAL);
+        writer.create(newSchema, out);
+        schema = newSchema;
+        openedAt = System.nanoTime();
+        fileRecords = 0;
+    }
+
+    private void complete() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.flush();
+        channel.force(true);
+        writer.close();
+        bytes += out.count;
+        files++;
+        writer = null;
+        Files.move(Paths.get(file + ".tmp"), file, StandardCopyOption.ATOMIC_MOVE);
+        archivedRecords += fileRecords;
+    }
+
+    /**
+     * Completes the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        complete();
+    }
+
+    /**
+     * @return number of records written
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * @return number of records written to completed files, i.e. on disk and published
+     */
+    public long getArchivedRecordCount() {
+        return archivedRecords;
+    }
+
+    @Override
+    public String toString() {
+        return "AvroContainerSink{records=" + records + ", archivedRecords=" + archivedRecords + ", completedFiles=" + files + ", completedBytes=" + bytes + "}";
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+}
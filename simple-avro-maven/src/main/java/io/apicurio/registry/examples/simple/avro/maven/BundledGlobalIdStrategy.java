@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.apache.avro.Schema;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.rest.beans.ArtifactMetaData;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+
+/**
+ * A global id strategy that resolves the schemas pre-registered by the build from the {@link SchemaIdBundle}
+ * found on the classpath, without any registry call.  Schemas that are not in the bundle are resolved by
+ * another strategy (by default the {@link GetOrCreateIdStrategy}).
+ * <p>
+ * A bundle generated against another registry than the configured one is ignored.  Since the registry may also have
+ * been reset since the build, the first id found in the bundle is checked once in the registry (its artifact id must
+ * match), and the whole bundle is ignored if it does not.
+ */
+@SuppressWarnings("deprecation")
+public class BundledGlobalIdStrategy implements GlobalIdStrategy<Schema> {
+
+    private static final SchemaIdBundle BUNDLE = SchemaIdBundle.load();
+
+    private final GlobalIdStrategy<Schema> delegate;
+    // The serializer passes the same schema instances over and over, no need to fingerprint them every time.
+    private final Map<String, Map<Schema, Long>> resolved = new ConcurrentHashMap<>();
+    // Null until the first bundled id has been checked in the registry.
+    private volatile Boolean bundleValid;
+
+    public BundledGlobalIdStrategy() {
+        this(null, new GetOrCreateIdStrategy<>());
+    }
+
+    public BundledGlobalIdStrategy(GlobalIdStrategy<Schema> delegate) {
+        this(null, delegate);
+    }
+
+    /**
+     * @param registryUrl the configured registry url, the bundle is ignored if it was generated against another one
+     */
+    public BundledGlobalIdStrategy(String registryUrl) {
+        this(registryUrl, new GetOrCreateIdStrategy<>());
+    }
+
+    /**
+     * @param registryUrl the configured registry url, the bundle is ignored if it was generated against another one,
+     *        or null if unknown
+     * @param delegate resolves the schemas that are not in the bundle
+     */
+    public BundledGlobalIdStrategy(String registryUrl, GlobalIdStrategy<Schema> delegate) {
+        this.delegate = delegate;
+        if (registryUrl != null && BUNDLE.getRegistryUrl() != null && !registryUrl.equals(BUNDLE.getRegistryUrl())) {
+            this.bundleValid = Boolean.FALSE;
+        }
+    }
+
+    /**
+     * @see io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy#findId(io.apicurio.registry.client.RegistryService, java.lang.String, io.apicurio.registry.types.ArtifactType, java.lang.Object)
+     */
+    @Override
+    public long findId(RegistryService service, String artifactId, ArtifactType artifactType, Schema schema) {
+        Map<Schema, Long> ids = resolved.computeIfAbsent(artifactId, id -> new ConcurrentHashMap<>());
+        Long globalId = ids.get(schema);
+        if (globalId == null) {
+            globalId = bundleValid == Boolean.FALSE ? null : BUNDLE.findGlobalId(artifactId, schema);
+            if (globalId == null || !isBundleValid(service, artifactId, globalId)) {
+                return delegate.findId(service, artifactId, artifactType, schema);
+            }
+            ids.put(schema, globalId);
+        }
+        return globalId;
+    }
+
+    private boolean isBundleValid(RegistryService service, String artifactId, long globalId) {
+        Boolean valid = bundleValid;
+        if (valid == null) {
+            synchronized (this) {
+                if (bundleValid == null) {
+                    bundleValid = isRegistered(service, artifactId, globalId);
+                    if (!bundleValid) {
+                        System.err.println("The schema id bundle does not match the registry (global id " + globalId
+                                + " is not " + artifactId + "), ignoring it.");
+                    }
+                }
+                valid = bundleValid;
+            }
+        }
+        return valid;
+    }
+
+    private static boolean isRegistered(RegistryService service, String artifactId, long globalId) {
+        try {
+            ArtifactMetaData metaData = service.getArtifactMetaDataByGlobalId(globalId);
+            return artifactId.equals(metaData.getId());
+        } catch (WebApplicationException e) {
+            if (e.getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the bundle read from the classpath
+     */
+    public static SchemaIdBundle getBundle() {
+        return BUNDLE;
+    }
+
+}
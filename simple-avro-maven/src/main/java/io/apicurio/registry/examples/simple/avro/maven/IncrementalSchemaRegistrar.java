@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.util.ArtifactArchive;
+import io.apicurio.registry.rest.beans.ArtifactMetaData;
+import io.apicurio.registry.rest.beans.IfExistsType;
+import io.apicurio.registry.types.ArtifactType;
+
+/**
+ * Registers schemas in the registry during the build, skipping the ones that did not change.
+ * <p>
+ * A local {@link SchemaManifest} keeps the sha-256 and global id of every registered schema.  A single call lists
+ * the existing artifacts, then the latest metadata of every existing one is fetched concurrently: a schema whose
+ * content hash is in the manifest, and whose global id is still the latest one of its artifact, is neither fetched
+ * nor sent.  The other existing schemas have the content of that latest version compared by hash, and only new or
+ * changed schemas (or schemas the registry lost, e.g. after a restart of an in-memory registry) are registered.
+ * The manifest is kept in the build directory, so the first build after a clean compares every schema.
+ * <p>
+ * The schemas can be given one by one, as whole directories or as glob patterns (see {@link SchemaSet#resolve}).
+ * They are registered {@code --parallelism} at a time, except that a schema referencing a named type defined by
+ * another schema of the set is only registered once that schema is.  The time taken by every schema and the overall
+ * throughput are printed, to size the parallelism.
+ * <p>
+ * This replaces the "register" goal of the apicurio-registry-maven-plugin in the build of this example, see the
+ * {@code register-artifact} execution in the pom.  With {@code --bundle}, it also generates a {@link SchemaIdBundle}
+ * of the global ids, so that producers using the {@link BundledGlobalIdStrategy} need no registry call to resolve
+ * them.  Usage:
+ * <pre>
+ * IncrementalSchemaRegistrar [--bundle=bundleFile] [--parallelism=N] registryUrl manifestFile (artifactId=schemaFile | directory | pattern)...
+ * </pre>
+ */
+public class IncrementalSchemaRegistrar {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final RegistryRestClient client;
+    private final SchemaManifest manifest;
+    private final int parallelism;
+
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger verified = new AtomicInteger();
+    private final AtomicInteger registered = new AtomicInteger();
+
+    public static final void main(String [] args) throws Exception {
+        Path bundle = null;
+        int parallelism = DEFAULT_PARALLELISM;
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--bundle=")) {
+                bundle = Paths.get(arg.substring("--bundle=".length()));
+            } else if (arg.startsWith("--parallelism=")) {
+                parallelism = Integer.parseInt(arg.substring("--parallelism=".length()));
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.size() < 3) {
+            System.err.println("Usage: IncrementalSchemaRegistrar [--bundle=bundleFile] [--parallelism=N] registryUrl manifestFile "
+                    + "(artifactId=schemaFile | directory | pattern)...");
+            throw new IllegalArgumentException("Missing arguments");
+        }
+        String registryUrl = positional.get(0);
+        Map<String, Path> schemas = SchemaSet.resolve(positional.subList(2, positional.size()));
+        if (schemas.isEmpty()) {
+            throw new IllegalArgumentException("No schema found in: " + positional.subList(2, positional.size()));
+        }
+
+        SchemaManifest manifest = SchemaManifest.load(Paths.get(positional.get(1)), registryUrl);
+        IncrementalSchemaRegistrar registrar = new IncrementalSchemaRegistrar(RegistryRestClientFactory.create(registryUrl), manifest, parallelism);
+        long start = System.nanoTime();
+        registrar.register(schemas);
+        manifest.save();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("Schemas: %d unchanged, %d verified, %d registered in %d ms (%.1f schemas/s, parallelism %d)",
+                registrar.unchanged.get(), registrar.verified.get(), registrar.registered.get(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                schemas.size() * 1e9 / Math.max(1, elapsed), parallelism));
+
+        if (bundle != null) {
+            Map<String, byte[]> contents = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> schema : schemas.entrySet()) {
+                contents.put(schema.getKey(), Files.readAllBytes(schema.getValue()));
+            }
+            SchemaIdBundle.write(bundle, contents, manifest);
+            System.out.println("Schema id bundle written to " + bundle);
+        }
+        // No System.exit, this runs inside the Maven JVM.
+    }
+
+    public IncrementalSchemaRegistrar(RegistryRestClient client, SchemaManifest manifest) {
+        this(client, manifest, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism max number of schemas registered concurrently
+     */
+    public IncrementalSchemaRegistrar(RegistryRestClient client, SchemaManifest manifest, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.client = client;
+        this.manifest = manifest;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Registers the new and changed schemas, updating the manifest.  The schemas referenced by other schemas are
+     * registered first.
+     *
+     * @param schemas artifactId -> schema file
+     */
+    public void register(Map<String, Path> schemas) throws IOException, InterruptedException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> schema : schemas.entrySet()) {
+            byte[] content = Files.readAllBytes(schema.getValue());
+            contents.put(schema.getKey(), content);
+            hashes.put(schema.getKey(), ArtifactArchive.sha256(new ByteArrayInputStream(content)));
+        }
+        if (contents.isEmpty()) {
+            return;
+        }
+
+        // One call to list the existing artifacts, then check the schemas concurrently, level by level so that the
+        // referenced schemas are in the registry before the schemas referencing them.
+        List<List<String>> levels = SchemaSet.levels(contents);
+        Set<String> existing = new HashSet<>(client.listArtifacts());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, contents.size()));
+        try {
+            for (List<String> level : levels) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (String artifactId : level) {
+                    futures.add(executor.submit(() -> {
+                        registerIfChanged(artifactId, contents.get(artifactId), hashes.get(artifactId), existing.contains(artifactId));
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Schema registration failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void registerIfChanged(String artifactId, byte[] content, String sha256, boolean exists) throws IOException {
+        long start = System.nanoTime();
+        if (exists) {
+            ArtifactMetaData latest = client.getArtifactMetaData(artifactId);
+            SchemaManifest.Entry entry = manifest.get(artifactId);
+            if (entry != null && entry.sha256.equals(sha256) && entry.globalId == latest.getGlobalId()) {
+                unchanged.incrementAndGet();
+                return;
+            }
+            // Compare the content of the version the metadata describes, not a possibly newer latest one.
+            String latestSha256;
+            try (InputStream version = client.getArtifactVersion(artifactId, latest.getVersion())) {
+                latestSha256 = ArtifactArchive.sha256(version);
+            }
+            if (latestSha256.equals(sha256)) {
+                // Already registered (e.g. by another build), only the manifest was missing it.
+                manifest.put(artifactId, sha256, latest.getGlobalId());
+                verified.incrementAndGet();
+                System.out.println("Verified " + artifactId + " (globalId " + latest.getGlobalId() + ") in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                return;
+            }
+        }
+        ArtifactMetaData metaData = client.createArtifact(artifactId, ArtifactType.AVRO, exists ? IfExistsType.UPDATE : IfExistsType.RETURN_OR_UPDATE,
+                new ByteArrayInputStream(content));
+        manifest.put(artifactId, sha256, metaData.getGlobalId());
+        registered.incrementAndGet();
+        System.out.println("Registered " + artifactId + " (globalId " + metaData.getGlobalId() + ") in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * Build-time bundle of the global ids of the pre-registered schemas, generated by the
+ * {@link IncrementalSchemaRegistrar} into the classpath and read by the {@link BundledGlobalIdStrategy}.
+ * <p>
+ * Schemas are keyed by artifact id and Avro parsing fingerprint, so that a schema built at runtime matches the
+ * registered file whatever its formatting.  Every entry also carries the sha-256 of the registered content.  The
+ * first line is the url of the registry the ids were registered in, see the {@link BundledGlobalIdStrategy} for how
+ * a bundle of another registry is detected.
+ */
+public class SchemaIdBundle {
+
+    /**
+     * Classpath location of the bundle.
+     */
+    public static final String RESOURCE = "META-INF/apicurio/schema-id-bundle.tsv";
+
+    private static final String REGISTRY_HEADER = "#registry";
+
+    private final String registryUrl;
+    private final Map<String, Long> globalIds;
+
+    private SchemaIdBundle(String registryUrl, Map<String, Long> globalIds) {
+        this.registryUrl = registryUrl;
+        this.globalIds = globalIds;
+    }
+
+    /**
+     * Loads the bundle from the classpath, an empty bundle is returned if there is none.
+     */
+    public static SchemaIdBundle load() {
+        final Map<String, Long> globalIds = new HashMap<>();
+        String registryUrl = null;
+        final ClassLoader classLoader = SchemaIdBundle.class.getClassLoader();
+        try (InputStream in = classLoader.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] fields = line.split("\t");
+                    if (fields.length == 2 && fields[0].equals(REGISTRY_HEADER)) {
+                        registryUrl = fields[1];
+                    } else if (fields.length == 4) {
+                        globalIds.put(key(fields[0], Long.parseUnsignedLong(fields[1], 16)), Long.parseLong(fields[2]));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SchemaIdBundle(registryUrl, globalIds);
+    }
+
+    /**
+     * @return url of the registry the ids were registered in, or null if the bundle does not say
+     */
+    public String getRegistryUrl() {
+        return registryUrl;
+    }
+
+    /**
+     * @return the global id of the schema, or null if it is not in the bundle
+     */
+    public Long findGlobalId(String artifactId, Schema schema) {
+        return globalIds.get(key(artifactId, SchemaNormalization.parsingFingerprint64(schema)));
+    }
+
+    /**
+     * @return number of schemas in the bundle
+     */
+    public int size() {
+        return globalIds.size();
+    }
+
+    /**
+     * Writes the bundle of the given schemas.
+     *
+     * @param schemas artifactId -> schema content
+     * @param manifest global id and sha-256 of the registered schemas, and the registry they were registered in
+     */
+    static void write(Path file, Map<String, byte[]> schemas, SchemaManifest manifest) throws IOException {
+        // Sorted, so that an unchanged set of schemas gives an identical file.
+        final Map<String, String> lines = new TreeMap<>();
+        // One parser for the whole set, fed in dependency order, so that a schema can reference the named types
+        // defined by the schemas of the previous levels.
+        final Schema.Parser parser = new Schema.Parser();
+        for (List<String> level : SchemaSet.levels(schemas)) {
+            for (String artifactId : level) {
+                final Schema schema = parser.parse(new String(schemas.get(artifactId), StandardCharsets.UTF_8));
+                final SchemaManifest.Entry entry = manifest.get(artifactId);
+                if (entry != null) {
+                    final long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+                    lines.put(artifactId, artifactId + "\t" + Long.toHexString(fingerprint) + "\t" + entry.globalId + "\t" + entry.sha256);
+                }
+            }
+        }
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(REGISTRY_HEADER + "\t" + manifest.getRegistryUrl());
+            writer.newLine();
+            for (String line : lines.values()) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String key(String artifactId, long fingerprint) {
+        return artifactId + "\t" + fingerprint;
+    }
+}
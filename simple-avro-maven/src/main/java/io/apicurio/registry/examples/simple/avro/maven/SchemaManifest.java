@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local manifest of the schemas registered by the {@link IncrementalSchemaRegistrar}: for every artifact, the
+ * sha-256 of the registered content and its global id.
+ * <p>
+ * The manifest is a tab separated file whose first line is the registry url, so that a manifest written against
+ * another registry is ignored.
+ */
+class SchemaManifest {
+
+    private static final String REGISTRY_HEADER = "#registry";
+
+    /**
+     * A registered schema.
+     */
+    static final class Entry {
+
+        final String sha256;
+        final long globalId;
+
+        Entry(String sha256, long globalId) {
+            this.sha256 = sha256;
+            this.globalId = globalId;
+        }
+    }
+
+    private final Path file;
+    private final String registryUrl;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private SchemaManifest(Path file, String registryUrl) {
+        this.file = file;
+        this.registryUrl = registryUrl;
+    }
+
+    /**
+     * Loads the manifest, or returns an empty one if it does not exist or was written against another registry.
+     */
+    static SchemaManifest load(Path file, String registryUrl) throws IOException {
+        final SchemaManifest manifest = new SchemaManifest(file, registryUrl);
+        if (!Files.exists(file)) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final String header = reader.readLine();
+            if (header == null || !header.equals(REGISTRY_HEADER + "\t" + registryUrl)) {
+                return manifest;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    manifest.entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2])));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    String getRegistryUrl() {
+        return registryUrl;
+    }
+
+    synchronized Entry get(String artifactId) {
+        return entries.get(artifactId);
+    }
+
+    synchronized void put(String artifactId, String sha256, long globalId) {
+        entries.put(artifactId, new Entry(sha256, globalId));
+    }
+
+    synchronized Map<String, Entry> entries() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+
+    /**
+     * Writes the manifest to a temporary file first, so that an interrupted build never leaves a partial one.
+     */
+    synchronized void save() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(REGISTRY_HEADER + "\t" + registryUrl);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue().sha256 + "\t" + entry.getValue().globalId);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.simple.avro.maven;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Resolves the schema files given to the {@link IncrementalSchemaRegistrar} and the order in which they can be
+ * registered.
+ */
+final class SchemaSet {
+
+    private static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList(
+            "null", "boolean", "int", "long", "float", "double", "bytes", "string"));
+
+    private SchemaSet() {
+    }
+
+    /**
+     * Resolves the schema sources, each of them can be:
+     * <ul>
+     *   <li>{@code artifactId=file}: a single schema, registered with the given artifact id</li>
+     *   <li>a directory: all the {@code .avsc} files below it</li>
+     *   <li>a glob pattern, e.g. {@code src/main/resources/schemas/**.avsc} for all the {@code .avsc} files below the
+     *   directory</li>
+     * </ul>
+     * The artifact id of the files found in directories or by patterns is their name without extension.
+     *
+     * @return artifactId -> schema file
+     */
+    static Map<String, Path> resolve(List<String> sources) throws IOException {
+        final Map<String, Path> schemas = new LinkedHashMap<>();
+        for (String source : sources) {
+            final int equals = source.indexOf('=');
+            if (equals > 0 && !isPattern(source.substring(0, equals)) && source.substring(0, equals).indexOf('/') < 0) {
+                add(schemas, source.substring(0, equals), Paths.get(source.substring(equals + 1)));
+            } else if (isPattern(source)) {
+                for (Path file : glob(source)) {
+                    add(schemas, artifactId(file), file);
+                }
+            } else if (Files.isDirectory(Paths.get(source))) {
+                try (Stream<Path> files = Files.walk(Paths.get(source))) {
+                    for (Path file : files.filter(f -> f.toString().endsWith(".avsc")).sorted().collect(Collectors.toList())) {
+                        add(schemas, artifactId(file), file);
+                    }
+                }
+            } else {
+                add(schemas, artifactId(Paths.get(source)), Paths.get(source));
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * Orders the schemas so that the named types they reference are registered first.
+     *
+     * @param schemas artifactId -> Avro schema content
+     * @return the artifact ids, by level: the schemas of a level only reference types of previous levels (or of
+     *         schemas that are not part of the set), so they can be registered in parallel
+     */
+    static List<List<String>> levels(Map<String, byte[]> schemas) throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final Map<String, String> definedBy = new HashMap<>();
+        final Map<String, Set<String>> references = new HashMap<>();
+        for (Map.Entry<String, byte[]> schema : schemas.entrySet()) {
+            final Set<String> defined = new HashSet<>();
+            final Set<String> referenced = new HashSet<>();
+            collectNames(mapper.readTree(schema.getValue()), "", defined, referenced);
+            for (String name : defined) {
+                definedBy.put(name, schema.getKey());
+            }
+            referenced.removeAll(defined);
+            references.put(schema.getKey(), referenced);
+        }
+
+        final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (String artifactId : schemas.keySet()) {
+            final Set<String> artifactDependencies = new HashSet<>();
+            for (String name : references.get(artifactId)) {
+                final String dependency = definedBy.get(name);
+                if (dependency != null && !dependency.equals(artifactId)) {
+                    artifactDependencies.add(dependency);
+                }
+            }
+            dependencies.put(artifactId, artifactDependencies);
+        }
+
+        final List<List<String>> levels = new ArrayList<>();
+        final Set<String> done = new HashSet<>();
+        while (!dependencies.isEmpty()) {
+            final List<String> level = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                if (done.containsAll(entry.getValue())) {
+                    level.add(entry.getKey());
+                }
+            }
+            if (level.isEmpty()) {
+                throw new IllegalArgumentException("Circular references between the schemas: " + dependencies.keySet());
+            }
+            for (String artifactId : level) {
+                dependencies.remove(artifactId);
+            }
+            done.addAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    /**
+     * Collects the full names of the named types (records, enums and fixed) defined and referenced by a schema.
+     */
+    private static void collectNames(JsonNode node, String namespace, Set<String> defined, Set<String> referenced) {
+        if (node == null) {
+            return;
+        }
+        if (node.isTextual()) {
+            if (!PRIMITIVES.contains(node.asText())) {
+                referenced.add(fullName(node.asText(), namespace));
+            }
+        } else if (node.isArray()) {
+            for (JsonNode type : node) {
+                collectNames(type, namespace, defined, referenced);
+            }
+        } else if (node.isObject()) {
+            final String type = node.path("type").asText();
+            switch (type) {
+                case "record":
+                case "error":
+                case "enum":
+                case "fixed":
+                    final String name = fullName(node.path("name").asText(), node.has("namespace") ? node.get("namespace").asText() : namespace);
+                    defined.add(name);
+                    final String childNamespace = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : "";
+                    for (JsonNode field : node.path("fields")) {
+                        collectNames(field.get("type"), childNamespace, defined, referenced);
+                    }
+                    break;
+                case "array":
+                    collectNames(node.get("items"), namespace, defined, referenced);
+                    break;
+                case "map":
+                    collectNames(node.get("values"), namespace, defined, referenced);
+                    break;
+                default:
+                    // A primitive with attributes (e.g. a logical type), or a nested type definition.
+                    collectNames(node.get("type"), namespace, defined, referenced);
+            }
+        }
+    }
+
+    private static String fullName(String name, String namespace) {
+        return name.indexOf('.') >= 0 || namespace.isEmpty() ? name : namespace + "." + name;
+    }
+
+    private static void add(Map<String, Path> schemas, String artifactId, Path file) {
+        final Path previous = schemas.put(artifactId, file);
+        if (previous != null && !previous.equals(file)) {
+            throw new IllegalArgumentException("Artifact " + artifactId + " matches both " + previous + " and " + file);
+        }
+    }
+
+    private static String artifactId(Path file) {
+        final String name = file.getFileName().toString();
+        return name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+    }
+
+    private static boolean isPattern(String source) {
+        return source.indexOf('*') >= 0 || source.indexOf('?') >= 0 || source.indexOf('{') >= 0 || source.indexOf('[') >= 0;
+    }
+
+    private static List<Path> glob(String pattern) throws IOException {
+        // Walk from the longest directory prefix without wildcards.
+        final String normalized = pattern.replace('\\', '/');
+        final int wildcard = normalized.length() - normalized.replaceFirst("[*?{\\[].*$", "").length();
+        final String prefix = normalized.substring(0, normalized.length() - wildcard);
+        final Path base = Paths.get(prefix.lastIndexOf('/') >= 0 ? prefix.substring(0, prefix.lastIndexOf('/') + 1) : ".");
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+        if (!Files.isDirectory(base)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(base.toString().equals(".") ? base.relativize(file) : file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -20,17 +20,23 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.WebApplicationException;
 
 import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -42,23 +48,26 @@ import org.apache.kafka.common.serialization.StringSerializer;
 
 import io.apicurio.registry.client.RegistryRestClient;
 import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
 import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
 import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
-import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
 import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
 
 /**
  * This example demonstrates how to use the Apicurio Registry in a very simple publish/subscribe
- * scenario with Avro as the serialization type and the Schema pre-registered via a Maven plugin.  
+ * scenario with Avro as the serialization type and the Schema pre-registered during the Maven build.  
  * The following aspects are demonstrated:
  * 
  * <ol>
  *   <li>Configuring a Kafka Serializer for use with Apicurio Registry</li>
  *   <li>Configuring a Kafka Deserializer for use with Apicurio Registry</li>
- *   <li>Pre-register the Avro schema in the registry via the Maven plugin</li>
+ *   <li>Pre-register the Avro schema in the registry during the Maven build</li>
+ *   <li>Resolve the global id of the schema from the id bundle generated by the build</li>
  *   <li>Data sent as a simple GenericRecord, no java beans needed</li>
+ *   <li>Optionally archive the consumed records into Avro container files (see {@link AvroContainerSink}), with
+ *   the arguments: archiveDirectory [codec]</li>
  * </ol>
  * 
  * Pre-requisites:
@@ -66,7 +75,7 @@ import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
  * <ul>
  *   <li>Kafka must be running on localhost:9092</li>
  *   <li>Apicurio Registry must be running on localhost:8080</li>
- *   <li>Schema is registered by executing "mvn io.apicurio:apicurio-registry-maven-plugin:register@register-artifact"</li>
+ *   <li>Schema is registered by executing "mvn compile exec:java@register-artifact" (also run by the build)</li>
  * </ul>
  * 
  * Note that this application will fail if the above maven command is not run first, since 
@@ -96,7 +105,7 @@ public class SimpleAvroMavenExample {
         } catch (WebApplicationException e) {
             if (e.getResponse().getStatus() == 404) {
                 System.err.println("Schema not registered in registry.  Before running this example, please do:");
-                System.err.println("  mvn io.apicurio:apicurio-registry-maven-plugin:register@register-artifact");
+                System.err.println("  mvn compile exec:java@register-artifact");
                 System.exit(1);
             }
         }
@@ -135,7 +144,15 @@ public class SimpleAvroMavenExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
+
+        // Archive the consumed messages if asked to.  The archived records are only completed (and their offsets
+        // committed) once the file they were written to is complete, until then they wait in unarchived.
+        AvroContainerSink sink = args.length > 0
+                ? new AvroContainerSink(Paths.get(args[0]), topicName, CodecFactory.fromString(args.length > 1 ? args[1] : "deflate"), 128L * 1024 * 1024, 10, TimeUnit.MINUTES)
+                : null;
+        Deque<ConsumerRecord<Long, GenericRecord>> unarchived = new ArrayDeque<>();
 
         // Consume the 5 messages.
         try {
@@ -143,23 +160,56 @@ public class SimpleAvroMavenExample {
             System.out.println("Consuming (5) messages.");
             while (messageCount < 5) {
                 final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
+                commits.track(records);
                 messageCount += records.count();
                 if (records.count() == 0) {
                     // Do nothing - no messages waiting.
                     System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
+                    if (sink != null) {
+                        sink.rollIfExpired();
+                        completeArchived(sink, unarchived, commits);
+                    }
+                } else for (ConsumerRecord<Long, GenericRecord> record : records) {
                     GenericRecord value = record.value();
                     System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
-                });
+                    if (sink != null) {
+                        sink.write(value);
+                        unarchived.add(record);
+                        completeArchived(sink, unarchived, commits);
+                    } else {
+                        commits.completed(record);
+                    }
+                }
+                commits.maybeCommit();
             }
         } finally {
-            consumer.close();
+            try {
+                if (sink != null) {
+                    sink.close();
+                    completeArchived(sink, unarchived, commits);
+                    System.out.println("Archived to " + args[0] + ": " + sink);
+                }
+            } finally {
+                commits.close();
+                consumer.close();
+            }
         }
         
         System.out.println("Done (success).");
         System.exit(0);
     }
 
+    /**
+     * Completes the records that reached a completed file of the sink, the records are written in order so these are
+     * the oldest ones.
+     */
+    private static void completeArchived(AvroContainerSink sink, Deque<ConsumerRecord<Long, GenericRecord>> unarchived, OffsetCommitManager commits) {
+        long buffered = sink.getRecordCount() - sink.getArchivedRecordCount();
+        while (unarchived.size() > buffered) {
+            commits.completed(unarchived.poll());
+        }
+    }
+
     /**
      * Creates the Kafka producer.
      */
@@ -178,8 +228,8 @@ public class SimpleAvroMavenExample {
         props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, SimpleTopicIdStrategy.class.getName());
-        // Get an existing schema or auto-register if not found
-        props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, GetOrCreateIdStrategy.class.getName());
+        // Use the global ids bundled by the build, checked once against this registry (get or auto-register other schemas)
+        props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, new BundledGlobalIdStrategy(REGISTRY_URL));
 
         // Create the Kafka producer
         Producer<Object, Object> producer = new KafkaProducer<>(props);
@@ -195,8 +245,8 @@ public class SimpleAvroMavenExample {
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         // Use the Apicurio Registry provided Kafka Deserializer for Avro
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * The records of a Kafka message written by the {@link AvroEnvelopeSerializer}, as returned by the
+ * {@link AvroEnvelopeDeserializer}.
+ * <p>
+ * The records are decoded lazily, while iterating: a consumer that only needs some of them, or that stops early,
+ * does not pay for the others.  Every iteration decodes the records again.
+ */
+public class AvroEnvelope implements Iterable<GenericRecord> {
+
+    private final long globalId;
+    private final byte[] data;
+    private final int offset;
+    private final DatumReader<GenericRecord> reader;
+    private final boolean array;
+    private final int size;
+
+    AvroEnvelope(long globalId, byte[] data, int offset, DatumReader<GenericRecord> reader, boolean array) {
+        this.globalId = globalId;
+        this.data = data;
+        this.offset = offset;
+        this.reader = reader;
+        this.array = array;
+        try {
+            // The serializer writes a single block, whose item count comes first.
+            this.size = array ? (int) decoder().readArrayStart() : 1;
+        } catch (IOException e) {
+            throw new SerializationException("Invalid envelope", e);
+        }
+    }
+
+    /**
+     * @return global id of the schema of the records
+     */
+    public long getGlobalId() {
+        return globalId;
+    }
+
+    /**
+     * @return number of records in the envelope
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<GenericRecord> iterator() {
+        final BinaryDecoder decoder = decoder();
+        return new Iterator<GenericRecord>() {
+
+            private long remaining = -1;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (remaining == -1) {
+                        remaining = array ? decoder.readArrayStart() : 1;
+                    } else if (remaining == 0 && array) {
+                        // End of a block, the next one may follow (or the 0 count ending the array).
+                        remaining = decoder.arrayNext();
+                        if (remaining == 0) {
+                            remaining = -2;
+                        }
+                    }
+                    return remaining > 0;
+                } catch (IOException e) {
+                    throw new SerializationException("Invalid envelope", e);
+                }
+            }
+
+            @Override
+            public GenericRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                if (!array && remaining == 0) {
+                    remaining = -2;
+                }
+                try {
+                    return reader.read(null, decoder);
+                } catch (IOException e) {
+                    throw new SerializationException("Cannot decode record of global id " + globalId, e);
+                }
+            }
+        };
+    }
+
+    private BinaryDecoder decoder() {
+        return DecoderFactory.get().binaryDecoder(data, offset, data.length - offset, null);
+    }
+
+}
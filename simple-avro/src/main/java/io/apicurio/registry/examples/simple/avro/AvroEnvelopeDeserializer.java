@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import io.apicurio.registry.client.RegistryRestClient;
+import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
+
+/**
+ * Reads the messages written by the {@link AvroEnvelopeSerializer}.  The records of the returned
+ * {@link AvroEnvelope} are decoded lazily, while iterating.
+ * <p>
+ * Messages without the {@value AvroEnvelopeSerializer#ENVELOPE_HEADER} header (written by the
+ * {@code AvroKafkaSerializer}) are read as an envelope of a single record, so a topic can be switched to envelopes
+ * without draining it first.  The schemas are fetched from the registry once per global id.
+ */
+public class AvroEnvelopeDeserializer implements Deserializer<AvroEnvelope> {
+
+    private RegistryRestClient client;
+    private final Map<Long, DatumReader<GenericRecord>> readers = new ConcurrentHashMap<>();
+
+    public AvroEnvelopeDeserializer() {
+    }
+
+    public AvroEnvelopeDeserializer(RegistryRestClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (client == null) {
+            Object url = configs.get(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+            if (url == null) {
+                throw new IllegalArgumentException("Missing registry url config: " + AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+            }
+            client = RegistryRestClientFactory.create(url.toString());
+        }
+    }
+
+    @Override
+    public AvroEnvelope deserialize(String topic, byte[] data) {
+        return deserialize(data, true);
+    }
+
+    @Override
+    public AvroEnvelope deserialize(String topic, Headers headers, byte[] data) {
+        return deserialize(data, headers == null || headers.lastHeader(AvroEnvelopeSerializer.ENVELOPE_HEADER) != null);
+    }
+
+    private AvroEnvelope deserialize(byte[] data, boolean array) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < AvroEnvelopeSerializer.HEADER_SIZE || data[0] != AbstractKafkaSerDe.MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte");
+        }
+        final long globalId = ByteBuffer.wrap(data, 1, Long.BYTES).getLong();
+        return new AvroEnvelope(globalId, data, AvroEnvelopeSerializer.HEADER_SIZE, readers.computeIfAbsent(globalId, this::reader), array);
+    }
+
+    private DatumReader<GenericRecord> reader(long globalId) {
+        try (InputStream schema = client.getArtifactByGlobalId(globalId)) {
+            return new GenericDatumReader<>(new Schema.Parser().parse(schema));
+        } catch (IOException e) {
+            throw new SerializationException("Cannot fetch the schema of global id " + globalId, e);
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+
+/**
+ * Packs several records of the same schema into a single Kafka message: one header (magic byte and 8 bytes global
+ * id, as written by the {@link AvroKafkaSerializer}) followed by the records as an Avro array, so that the Kafka
+ * per-record overhead and the header are paid once for the whole batch.  Worth it for small records, e.g. the
+ * greetings of the {@link SimpleAvroExample}, see {@link SimpleAvroExample#produceEnvelopes}.
+ * <p>
+ * The value of the producer records is the list of records.  The message gets an {@value #ENVELOPE_HEADER} header,
+ * and is read by the {@link AvroEnvelopeDeserializer}.  The global id is resolved by an {@link AvroKafkaSerializer}
+ * configured with the same configuration (artifact id and global id strategies), once per schema and topic.
+ */
+@SuppressWarnings("deprecation")
+public class AvroEnvelopeSerializer<T extends GenericContainer> implements Serializer<List<T>> {
+
+    /**
+     * Header of the envelope messages.
+     */
+    public static final String ENVELOPE_HEADER = "apicurio.envelope";
+    static final byte[] ENVELOPE_ARRAY = "array".getBytes(StandardCharsets.UTF_8);
+
+    // Magic byte and global id, with the default id handler.
+    static final int HEADER_SIZE = 1 + Long.BYTES;
+
+    private final AvroKafkaSerializer<T> delegate;
+
+    // Copy-on-write, keyed by schema identity: the records of a batch share their schema instance.
+    private volatile Map<Schema, SchemaState> states = new IdentityHashMap<>();
+
+    public AvroEnvelopeSerializer() {
+        this.delegate = new AvroKafkaSerializer<>();
+    }
+
+    public AvroEnvelopeSerializer(RegistryService service) {
+        this.delegate = new AvroKafkaSerializer<>(service);
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, List<T> data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, List<T> data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.isEmpty()) {
+            throw new SerializationException("Cannot serialize an empty envelope");
+        }
+        final T first = data.get(0);
+        SchemaState state = states.get(first.getSchema());
+        if (state == null || !state.topic.equals(topic)) {
+            state = resolve(topic, first);
+        }
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + 32 * data.size());
+            out.write(state.header);
+            final BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+            encoder.writeArrayStart();
+            encoder.setItemCount(data.size());
+            for (T record : data) {
+                if (record.getSchema() != state.schema && !record.getSchema().equals(state.schema)) {
+                    throw new SerializationException("All the records of an envelope must have the same schema, got "
+                            + record.getSchema().getFullName() + " and " + state.schema.getFullName());
+                }
+                encoder.startItem();
+                state.writer.write(record, encoder);
+            }
+            encoder.writeArrayEnd();
+            encoder.flush();
+            if (headers != null) {
+                headers.add(ENVELOPE_HEADER, ENVELOPE_ARRAY);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize envelope of " + state.schema.getFullName(), e);
+        }
+    }
+
+    private synchronized SchemaState resolve(String topic, T first) {
+        final Schema schema = first.getSchema();
+        SchemaState state = states.get(schema);
+        if (state == null || !state.topic.equals(topic)) {
+            // The delegate resolves the global id of the schema, its header is the header of the envelope.
+            final byte[] single = delegate.serialize(topic, first);
+            state = new SchemaState(topic, schema, Arrays.copyOf(single, HEADER_SIZE));
+            final Map<Schema, SchemaState> copy = new IdentityHashMap<>(states);
+            copy.put(schema, state);
+            states = copy;
+        }
+        return state;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static final class SchemaState {
+
+        private final String topic;
+        private final Schema schema;
+        private final byte[] header;
+        private final DatumWriter<Object> writer;
+
+        private SchemaState(String topic, Schema schema, byte[] header) {
+            this.topic = topic;
+            this.schema = schema;
+            this.header = header;
+            this.writer = new GenericDatumWriter<>(schema);
+        }
+    }
+
+}
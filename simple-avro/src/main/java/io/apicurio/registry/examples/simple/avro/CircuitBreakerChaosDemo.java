@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.examples.util.CircuitBreaker;
+import io.apicurio.registry.rest.beans.ArtifactMetaData;
+import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
+
+/**
+ * Chaos test of the {@link CircuitBreakerIdStrategy}: the serializer of the {@link SimpleAvroExample} is run against
+ * an in-process registry stand-in that goes through healthy, slow, failing and recovered phases, with and without
+ * the circuit breaker.  The serialize rate of every phase is printed, the breaker keeps it steady by serving the
+ * last-known-good ids while the plain strategy stalls on every lookup.
+ * <p>
+ * Consumers get the same protection by creating their deserializer on a wrapped service, e.g.
+ * {@code new AvroKafkaDeserializer<>(breaker.wrap(RegistryService.class, service))}: schemas already known by the
+ * deserializer keep being served from its cache, unknown ones fail fast while the circuit is open.
+ * <p>
+ * No Kafka broker or registry is needed to run this demo.
+ *
+ * @see CircuitBreaker
+ */
+@SuppressWarnings("deprecation")
+public class CircuitBreakerChaosDemo {
+
+    private static final String TOPIC_NAME = SimpleAvroExample.class.getSimpleName();
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
+    private static final String UNKNOWN_SCHEMA = "{\"type\":\"record\",\"name\":\"Farewell\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"}]}";
+    private static final long PHASE_MILLIS = 3000;
+
+    private static volatile long latencyMillis;
+    private static volatile boolean failing;
+
+    public static final void main(String [] args) throws Exception {
+        System.out.println("Starting example " + CircuitBreakerChaosDemo.class.getSimpleName());
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        System.out.println("Without circuit breaker:");
+        runPhases(new GetOrCreateIdStrategy<>(), schema);
+
+        System.out.println("With circuit breaker:");
+        CircuitBreaker breaker = new CircuitBreaker(3, 50, 1000, TimeUnit.MILLISECONDS);
+        AvroKafkaSerializer<GenericRecord> serializer = runPhases(new CircuitBreakerIdStrategy<>(new GetOrCreateIdStrategy<>(), breaker), schema);
+
+        // A schema that was never resolved fails fast while the circuit is open.
+        failing = true;
+        for (int i = 0; i < 3; i++) {
+            serialize(serializer, schema, 1);
+        }
+        GenericRecord unknown = new GenericData.Record(new Schema.Parser().parse(UNKNOWN_SCHEMA));
+        unknown.put("Message", "Bye!");
+        long start = System.nanoTime();
+        try {
+            serializer.serialize(TOPIC_NAME, unknown);
+        } catch (RuntimeException e) {
+            System.out.println("Unknown schema rejected in " + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + " us: " + e.getMessage());
+        }
+        System.out.println(breaker);
+
+        System.out.println("Done (success).");
+        System.exit(0);
+    }
+
+    private static AvroKafkaSerializer<GenericRecord> runPhases(GlobalIdStrategy<Schema> idStrategy, Schema schema) {
+        AvroKafkaSerializer<GenericRecord> serializer = new AvroKafkaSerializer<>(standIn(), new SimpleTopicIdStrategy<>(), idStrategy);
+        serializer.configure(Collections.emptyMap(), false);
+
+        phase(serializer, schema, "healthy", 0, false);
+        phase(serializer, schema, "slow (200 ms)", 200, false);
+        phase(serializer, schema, "failing", 0, true);
+        phase(serializer, schema, "recovered", 0, false);
+        return serializer;
+    }
+
+    private static void phase(AvroKafkaSerializer<GenericRecord> serializer, Schema schema, String name, long latency, boolean fail) {
+        latencyMillis = latency;
+        failing = fail;
+        long count = serialize(serializer, schema, PHASE_MILLIS);
+        System.out.println(String.format("  %-15s %,12.0f records/s", name, count * 1000.0 / PHASE_MILLIS));
+    }
+
+    /**
+     * Serializes records for the given duration, returns the number of records serialized.
+     */
+    private static long serialize(AvroKafkaSerializer<GenericRecord> serializer, Schema schema, long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long count = 0;
+        do {
+            GenericRecord record = new GenericData.Record(schema);
+            record.put("Message", "Hello (" + count + ")!");
+            record.put("Time", System.currentTimeMillis());
+            try {
+                serializer.serialize(TOPIC_NAME, record);
+                count++;
+            } catch (RuntimeException e) {
+                // The record is lost, as it would be in a real producer.
+            }
+        } while (System.nanoTime() < deadline);
+        return count;
+    }
+
+    /**
+     * A registry stand-in that answers every lookup with the same artifact, after the configured latency, or fails.
+     */
+    private static RegistryService standIn() {
+        ArtifactMetaData metaData = new ArtifactMetaData();
+        metaData.setId(TOPIC_NAME);
+        metaData.setGlobalId(1L);
+        return (RegistryService) Proxy.newProxyInstance(RegistryService.class.getClassLoader(), new Class<?>[]{RegistryService.class}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "RegistryStandIn";
+                }
+            }
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (failing) {
+                throw new IllegalStateException(new IOException("Registry stand-in is failing"));
+            }
+            if (method.getReturnType() == ArtifactMetaData.class) {
+                return metaData;
+            }
+            if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+                return CompletableFuture.completedFuture(metaData);
+            }
+            if (method.getReturnType() == void.class) {
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.examples.util.CircuitBreaker;
+import io.apicurio.registry.examples.util.CircuitOpenException;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy;
+
+/**
+ * A global id strategy that protects the lookups of another strategy (by default the {@link GetOrCreateIdStrategy})
+ * with a {@link CircuitBreaker}.
+ * <p>
+ * Every id resolved by the registry is kept as the last-known-good id of its artifact and schema.  While the
+ * circuit is open, or when a lookup fails, the serializer keeps going with that id; only a schema that was never
+ * resolved fails fast with a {@link CircuitOpenException} instead of blocking the producer.
+ * <p>
+ * Only the failures of the registry count against the circuit: transport errors and server errors (HTTP 5xx).  The
+ * other answers, e.g. a 409 for a schema rejected by a compatibility rule, are the registry working as intended:
+ * they are thrown as is, without falling back to a last-known-good id.  The registry client does not always report
+ * transport errors as such (it logs some of them and returns null, which the strategies then dereference), so any
+ * error that is not an HTTP answer counts as a transport error.
+ */
+@SuppressWarnings("deprecation")
+public class CircuitBreakerIdStrategy<T> implements GlobalIdStrategy<T> {
+
+    // Opens after 3 consecutive failed (or slower than 500 ms) lookups, probes again after 5 seconds.
+    private static final CircuitBreaker DEFAULT_BREAKER = new CircuitBreaker(3, 500, 5000, TimeUnit.MILLISECONDS);
+
+    private final GlobalIdStrategy<T> delegate;
+    private final CircuitBreaker breaker;
+    private final Map<List<Object>, Long> lastKnownGood = new ConcurrentHashMap<>();
+
+    public CircuitBreakerIdStrategy() {
+        this(new GetOrCreateIdStrategy<>(), DEFAULT_BREAKER);
+    }
+
+    public CircuitBreakerIdStrategy(GlobalIdStrategy<T> delegate, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    /**
+     * @see io.apicurio.registry.utils.serde.strategy.GlobalIdStrategy#findId(io.apicurio.registry.client.RegistryService, java.lang.String, io.apicurio.registry.types.ArtifactType, java.lang.Object)
+     */
+    @Override
+    public long findId(RegistryService service, String artifactId, ArtifactType artifactType, T t) {
+        final List<Object> key = Arrays.asList(artifactId, t);
+        if (!breaker.tryAcquire()) {
+            return fallback(key, null);
+        }
+        final long start = System.nanoTime();
+        // Reported in a finally, so that an Error cannot leave a half-open probe pending forever.
+        boolean failed = true;
+        final long id;
+        try {
+            id = delegate.findId(service, artifactId, artifactType, t);
+            failed = false;
+        } catch (RuntimeException e) {
+            if (!isRegistryFailure(e)) {
+                failed = false;
+                throw e;
+            }
+            return fallback(key, e);
+        } finally {
+            breaker.onResult(System.nanoTime() - start, failed);
+        }
+        lastKnownGood.put(key, id);
+        return id;
+    }
+
+    private long fallback(List<Object> key, RuntimeException error) {
+        final Long id = lastKnownGood.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (error != null) {
+            throw error;
+        }
+        throw new CircuitOpenException("Registry circuit is open and the schema of artifact " + key.get(0) + " was never resolved");
+    }
+
+    /**
+     * @return false for the HTTP answers below 500, true for the server errors and any other error
+     */
+    private static boolean isRegistryFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof WebApplicationException) {
+                final Response response = ((WebApplicationException) t).getResponse();
+                return response == null || response.getStatus() >= 500;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the breaker shared by the instances created by the serializers
+     */
+    public static CircuitBreaker getDefaultBreaker() {
+        return DEFAULT_BREAKER;
+    }
+
+}
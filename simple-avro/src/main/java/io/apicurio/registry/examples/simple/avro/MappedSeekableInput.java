@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.avro.file.SeekableInput;
+
+/**
+ * A {@link SeekableInput} over a memory-mapped file, so that Avro reads the container files without any read
+ * system call or intermediate copy.  Files larger than 1 GB are mapped in several segments.
+ */
+class MappedSeekableInput implements SeekableInput {
+
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+    private long position;
+
+    MappedSeekableInput(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i * SEGMENT_SIZE;
+                // The mappings stay valid once the channel is closed.
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    @Override
+    public void seek(long p) throws IOException {
+        if (p < 0 || p > length) {
+            throw new IOException("Position " + p + " out of file of " + length + " bytes");
+        }
+        position = p;
+    }
+
+    @Override
+    public long tell() {
+        return position;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (position >= length) {
+            return -1;
+        }
+        int read = 0;
+        while (read < len && position < length) {
+            final MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            final int offset = (int) (position % SEGMENT_SIZE);
+            final int count = Math.min(len - read, segment.limit() - offset);
+            // Absolute reads on a duplicate, so that the segments can be shared.
+            final ByteBuffer view = segment.duplicate();
+            view.position(offset);
+            view.get(b, off + read, count);
+            read += count;
+            position += count;
+        }
+        return read;
+    }
+
+    @Override
+    public void close() {
+        // The mappings are released when garbage collected.
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.apicurio.registry.client.CompatibleClient;
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.examples.util.HedgingLoadBalancer;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
+import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
+import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+
+/**
+ * Creates the Avro serdes of the {@link SimpleAvroExample} on several registry replicas.
+ * <p>
+ * The registry url ({@link AbstractKafkaSerDe#REGISTRY_URL_CONFIG_PARAM}) can then be a comma separated list of
+ * urls: the lookups are spread across the replicas with least-outstanding-requests balancing and slow reads are
+ * hedged to a second replica by a {@link HedgingLoadBalancer}.  As Kafka cannot pass the balanced service to the
+ * serdes it creates by class name, the serdes are created here and given to the producer and consumer, e.g.
+ * {@code new KafkaProducer<>(props, new StringSerializer(), MultiEndpointSerdes.avroSerializer(props))}.
+ */
+@SuppressWarnings("deprecation")
+public class MultiEndpointSerdes {
+
+    // Shared by the serdes of the JVM, so that the hedge delay is learned from all the lookups.
+    private static final HedgingLoadBalancer BALANCER = new HedgingLoadBalancer();
+
+    /**
+     * Creates a registry service balancing its calls across the given replicas.
+     *
+     * @param registryUrls comma separated list of registry urls
+     */
+    public static RegistryService createService(String registryUrls) {
+        List<RegistryService> replicas = new ArrayList<>();
+        for (String url : HedgingLoadBalancer.parseUrls(registryUrls)) {
+            replicas.add(CompatibleClient.createCompatible(url));
+        }
+        return BALANCER.wrap(RegistryService.class, replicas);
+    }
+
+    /**
+     * Creates and configures an Avro serializer on the replicas listed in the registry url config.
+     */
+    public static <T> AvroKafkaSerializer<T> avroSerializer(Map<?, ?> configs) {
+        AvroKafkaSerializer<T> serializer = new AvroKafkaSerializer<>(createService(registryUrls(configs)));
+        serializer.configure(toConfigs(configs), false);
+        return serializer;
+    }
+
+    /**
+     * Creates and configures an Avro deserializer on the replicas listed in the registry url config.
+     */
+    public static <T> AvroKafkaDeserializer<T> avroDeserializer(Map<?, ?> configs) {
+        AvroKafkaDeserializer<T> deserializer = new AvroKafkaDeserializer<>(createService(registryUrls(configs)));
+        deserializer.configure(toConfigs(configs), false);
+        return deserializer;
+    }
+
+    /**
+     * @return the balancer shared by the serdes, to export its hedge statistics
+     */
+    public static HedgingLoadBalancer getBalancer() {
+        return BALANCER;
+    }
+
+    private static String registryUrls(Map<?, ?> configs) {
+        Object urls = configs.get(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+        if (urls == null) {
+            throw new IllegalArgumentException("Missing registry url config: " + AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM);
+        }
+        return urls.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> toConfigs(Map<?, ?> configs) {
+        return (Map<String, ?>) configs;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.apicurio.registry.examples.kafka.BatchProcessor;
+import io.apicurio.registry.examples.kafka.IteratorPublisher;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.kafka.RecordPublisher;
+import io.apicurio.registry.examples.kafka.SendSubscriber;
+
+/**
+ * The {@link SimpleAvroExample} flows as backpressured reactive pipelines, instead of a send loop paced by sleeps
+ * and a blocking poll loop:
+ *
+ * <ol>
+ *   <li>Generated records are sent by a {@link SendSubscriber}, with at most {@value #MAX_IN_FLIGHT} records not
+ *   acknowledged yet: the generation follows the broker acknowledgements</li>
+ *   <li>The consumed records are published by a {@link RecordPublisher}, grouped by a {@link BatchProcessor} and
+ *   processed a batch at a time: the consumer only polls when a batch is requested, and their offsets are
+ *   committed once processed</li>
+ * </ol>
+ *
+ * Usage: ReactivePipelineExample [records].  Same pre-requisites as the {@link SimpleAvroExample}.
+ */
+public class ReactivePipelineExample {
+
+    private static final String REGISTRY_URL = "http://localhost:8080/api";
+    private static final int MAX_IN_FLIGHT = 1000;
+    private static final int BATCH_SIZE = 100;
+    // Batches requested ahead: one being processed, one being filled.
+    private static final int BATCHES_AHEAD = 2;
+
+    public static final void main(String [] args) throws Exception {
+        System.out.println("Starting example " + ReactivePipelineExample.class.getSimpleName());
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        Producer<Object, Object> producer = new KafkaProducer<>(SimpleAvroExample.createProducerConfig(REGISTRY_URL));
+        try {
+            System.out.println("Producing (" + count + ") messages.");
+            long acknowledged = produceMessages(producer, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, count);
+            System.out.println(acknowledged + " messages successfully produced.");
+        } finally {
+            producer.close();
+        }
+
+        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(SimpleAvroExample.createConsumerConfig(REGISTRY_URL));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(SimpleAvroExample.TOPIC_NAME), commits);
+        System.out.println("Consuming (" + count + ") messages.");
+        // The consumer is closed by the pipeline.
+        consumeMessages(consumer, commits, count, count <= 10);
+
+        System.out.println("Done (success).");
+        System.exit(0);
+    }
+
+    /**
+     * Sends the given number of messages through a {@link SendSubscriber}, waiting for their acknowledgement.
+     *
+     * @return number of acknowledged messages
+     */
+    static long produceMessages(Producer<Object, Object> producer, String topicName, String subjectName, int count) throws Exception {
+        Schema schema = new Schema.Parser().parse(SimpleAvroExample.SCHEMA);
+        Iterator<ProducerRecord<Object, Object>> records = new Iterator<ProducerRecord<Object, Object>>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext() {
+                return idx < count;
+            }
+
+            @Override
+            public ProducerRecord<Object, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                GenericRecord record = new GenericData.Record(schema);
+                record.put("Message", "Hello (" + idx++ + ")!");
+                record.put("Time", System.currentTimeMillis());
+                return new ProducerRecord<>(topicName, subjectName, record);
+            }
+        };
+        SendSubscriber<Object, Object> sender = new SendSubscriber<>(producer, MAX_IN_FLIGHT);
+        new IteratorPublisher<>(records).subscribe(sender);
+        return sender.completion().get();
+    }
+
+    /**
+     * Consumes the given number of messages in batches, printing them if asked to, then cancels the pipeline and
+     * waits for the consumer to be closed.
+     */
+    static void consumeMessages(Consumer<Long, GenericRecord> consumer, OffsetCommitManager commits, int count, boolean print) throws Exception {
+        RecordPublisher<Long, GenericRecord> publisher = new RecordPublisher<>(consumer, commits);
+        BatchProcessor<ConsumerRecord<Long, GenericRecord>> batches = new BatchProcessor<>(BATCH_SIZE, 100, TimeUnit.MILLISECONDS);
+        publisher.subscribe(batches);
+        batches.subscribe(new Subscriber<List<ConsumerRecord<Long, GenericRecord>>>() {
+            private Subscription subscription;
+            private int messageCount;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(BATCHES_AHEAD);
+            }
+
+            @Override
+            public void onNext(List<ConsumerRecord<Long, GenericRecord>> batch) {
+                for (ConsumerRecord<Long, GenericRecord> record : batch) {
+                    if (print) {
+                        GenericRecord value = record.value();
+                        System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
+                    }
+                    commits.completed(record);
+                }
+                messageCount += batch.size();
+                if (messageCount >= count) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                // Raised by the publisher, whose termination fails with it.
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        publisher.termination().get();
+    }
+
+}
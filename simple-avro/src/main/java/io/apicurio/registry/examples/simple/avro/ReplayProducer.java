@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+
+import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+
+/**
+ * Replays Avro container files (e.g. written by an archiving consumer) to the topic of the {@link SimpleAvroExample},
+ * to load-test consumers with captured traffic.
+ * <p>
+ * The files are memory-mapped, and their records are never decoded: every block is only decompressed and split into
+ * records by skipping through them with the schema, and each record is sent as is behind the magic byte and global
+ * id of its schema.  The global id is resolved once per file, by serializing its first record with an
+ * {@link AvroKafkaSerializer} configured as the producer of the example.  The records are sent asynchronously, as
+ * fast as possible or at the given rate, so the replay is limited by the broker.
+ * <p>
+ * Usage: ReplayProducer [--rate=recordsPerSecond] (file | directory)...
+ */
+@SuppressWarnings("deprecation")
+public class ReplayProducer implements AutoCloseable {
+
+    private static final String REGISTRY_URL = "http://localhost:8080/api";
+
+    private final Producer<String, byte[]> producer;
+    private final AvroKafkaSerializer<GenericRecord> serializer;
+    private final String topicName;
+    private final String key;
+    private final long nanosPerRecord;
+
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicReference<Exception> lastError = new AtomicReference<>();
+    private long sent;
+    private long startNanos;
+
+    public static final void main(String [] args) throws Exception {
+        double rate = 0;
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--rate=")) {
+                rate = Double.parseDouble(arg.substring("--rate=".length()));
+            } else if (Files.isDirectory(Paths.get(arg))) {
+                try (Stream<Path> list = Files.list(Paths.get(arg))) {
+                    files.addAll(list.filter(f -> f.toString().endsWith(".avro")).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(Paths.get(arg));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: ReplayProducer [--rate=recordsPerSecond] (file | directory)...");
+            System.exit(1);
+        }
+
+        System.out.println("Replaying " + files.size() + " file(s) to " + SimpleAvroExample.TOPIC_NAME + (rate > 0 ? " at " + rate + " records/s" : ""));
+        Properties props = SimpleAvroExample.createProducerConfig(REGISTRY_URL);
+        try (ReplayProducer replay = new ReplayProducer(props, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, rate)) {
+            for (Path file : files) {
+                replay.replay(file);
+            }
+            replay.producer.flush();
+            System.out.println(replay);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * @param props configuration of the producer of the example, the serializers are replaced
+     * @param rate records per second, 0 to send as fast as possible
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ReplayProducer(Properties props, String topicName, String key, double rate) {
+        this.topicName = topicName;
+        this.key = key;
+        this.nanosPerRecord = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+
+        // The serializer only resolves the global ids, with the id strategies of the producer config.
+        serializer = new AvroKafkaSerializer<>();
+        serializer.configure((Map) props, false);
+
+        Properties replayProps = new Properties();
+        replayProps.putAll(props);
+        replayProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        // Larger batches, the records are sent as fast as they can be read.
+        replayProps.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, "5");
+        replayProps.putIfAbsent(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(256 * 1024));
+        producer = new KafkaProducer<>(replayProps);
+    }
+
+    /**
+     * Sends all the records of the given container file.
+     */
+    public void replay(Path file) throws IOException, InterruptedException {
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new MappedSeekableInput(file), new GenericDatumReader<>())) {
+            final Schema schema = reader.getSchema();
+            byte[] header = null;
+            while (reader.hasNext()) {
+                if (header == null) {
+                    // Decoding the first record is the only way to resolve the global id through the strategies.
+                    header = Arrays.copyOf(serializer.serialize(topicName, reader.next()), AvroEnvelopeSerializer.HEADER_SIZE);
+                    // Back to the first block, to send it whole.
+                    reader.sync(0);
+                    continue;
+                }
+                final long count = reader.getBlockCount();
+                final ByteBuffer block = reader.nextBlock();
+                sendBlock(header, schema, block, count);
+            }
+        }
+    }
+
+    private void sendBlock(byte[] header, Schema schema, ByteBuffer block, long count) throws IOException, InterruptedException {
+        final RecordBoundaries in = new RecordBoundaries(block.array(), block.arrayOffset() + block.position(), block.remaining());
+        final Decoder decoder = DecoderFactory.get().directBinaryDecoder(in, null);
+        for (long i = 0; i < count; i++) {
+            final int start = in.position();
+            GenericDatumReader.skip(schema, decoder);
+            final int length = in.position() - start;
+
+            final byte[] value = new byte[header.length + length];
+            System.arraycopy(header, 0, value, 0, header.length);
+            in.copy(start, value, header.length, length);
+            pace();
+            producer.send(new ProducerRecord<>(topicName, key, value), (metadata, error) -> {
+                if (error == null) {
+                    acked.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    lastError.set(error);
+                }
+            });
+            sent++;
+        }
+    }
+
+    private void pace() throws InterruptedException {
+        if (nanosPerRecord == 0) {
+            return;
+        }
+        final long ahead = startNanos + sent * nanosPerRecord - System.nanoTime();
+        if (ahead > TimeUnit.MILLISECONDS.toNanos(1)) {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return String.format("Replayed %,d records in %.2f s (%,.0f records/s), %,d acked, %,d failed%s", sent, seconds, sent / seconds,
+                acked.get(), failed.get(), lastError.get() == null ? "" : ", last error: " + lastError.get());
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+        serializer.close();
+    }
+
+    /**
+     * A stream over a decompressed block, whose position gives the boundaries of the records.
+     */
+    private static final class RecordBoundaries extends ByteArrayInputStream {
+
+        private RecordBoundaries(byte[] buf, int offset, int length) {
+            super(buf, offset, length);
+        }
+
+        private int position() {
+            return pos;
+        }
+
+        private void copy(int from, byte[] target, int offset, int length) {
+            System.arraycopy(buf, from, target, offset, length);
+        }
+    }
+
+}
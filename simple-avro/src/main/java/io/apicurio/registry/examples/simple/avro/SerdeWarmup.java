@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.FindLatestIdStrategy;
+import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
+
+/**
+ * Warms up the serializers and deserializers before the first real record, so that the first sends do not pay for
+ * class loading, the compilation of the Avro schema, the registry lookup and the interpretation of the serde path.
+ * <p>
+ * Synthetic records of every given schema are run through the serializer and the deserializer.  The first record of
+ * a schema does the registry lookup, the following ones only warm up the code, provided that the lookups are cached:
+ * the deserializer caches the schemas by global id, the serializer needs a caching global id strategy such as the
+ * {@link CachedSchemaIdStrategy} (the {@link GetOrCreateIdStrategy} looks the registry up on every record, i.e. on
+ * every iteration).  The warmed instances must be the ones given to the Kafka clients, e.g.
+ * {@code new KafkaProducer<>(props, keySerializer, warmedValueSerializer)}.  The synthetic records are not sent,
+ * but the serializer registers the schemas as it would for the first real record.  A consumer warms up its
+ * deserializer with a {@link #newLookupSerializer lookup serializer}, which never registers anything.  See the
+ * {@code SerdeWarmupBenchmark} for the effect on the latency of the first records.
+ */
+public class SerdeWarmup {
+
+    private static final int DEFAULT_ITERATIONS = 2000;
+
+    private final String topic;
+    private final int iterations;
+    private final Random random = new Random(42);
+
+    /**
+     * Runs {@value #DEFAULT_ITERATIONS} records per schema, enough for the serde path to be compiled by the JIT.
+     */
+    public SerdeWarmup(String topic) {
+        this(topic, DEFAULT_ITERATIONS);
+    }
+
+    public SerdeWarmup(String topic, int iterations) {
+        this.topic = topic;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Runs synthetic records of the given schemas through the serializer, then the deserializer if any.
+     *
+     * @return time taken, in nanoseconds
+     */
+    public long warmUp(Serializer<Object> serializer, Deserializer<?> deserializer, Schema... schemas) {
+        final long start = System.nanoTime();
+        for (Schema schema : schemas) {
+            for (int i = 0; i < iterations; i++) {
+                final byte[] bytes = serializer.serialize(topic, synthetic(schema, random));
+                if (deserializer != null) {
+                    deserializer.deserialize(topic, bytes);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates and configures the key or value serializer of the given producer configuration.
+     */
+    public static <T> Serializer<T> newSerializer(Properties props, boolean isKey) {
+        final Serializer<T> serializer = newInstance(props, isKey ? ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG : ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                Serializer.class);
+        serializer.configure(toMap(props), isKey);
+        return serializer;
+    }
+
+    /**
+     * Creates and configures a value serializer of the given producer configuration that only looks up the latest
+     * version of the artifacts, once per artifact, and never registers a schema.  It serializes the warm-up records
+     * of a deserializer, as a consumer must not create artifacts.
+     */
+    public static Serializer<Object> newLookupSerializer(Properties producerProps) {
+        final Properties props = new Properties();
+        props.putAll(producerProps);
+        props.put(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, new LatestIdStrategy<>());
+        return newSerializer(props, false);
+    }
+
+    /**
+     * Creates and configures the key or value deserializer of the given consumer configuration.
+     */
+    public static <T> Deserializer<T> newDeserializer(Properties props, boolean isKey) {
+        final Deserializer<T> deserializer = newInstance(props, isKey ? ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG : ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
+                Deserializer.class);
+        deserializer.configure(toMap(props), isKey);
+        return deserializer;
+    }
+
+    /**
+     * Creates a random value of the given schema.
+     */
+    static Object synthetic(Schema schema, Random random) {
+        switch (schema.getType()) {
+            case RECORD:
+                final GenericRecord record = new GenericData.Record(schema);
+                for (Schema.Field field : schema.getFields()) {
+                    record.put(field.pos(), synthetic(field.schema(), random));
+                }
+                return record;
+            case ENUM:
+                return new GenericData.EnumSymbol(schema, schema.getEnumSymbols().get(random.nextInt(schema.getEnumSymbols().size())));
+            case ARRAY:
+                final List<Object> array = new ArrayList<>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    array.add(synthetic(schema.getElementType(), random));
+                }
+                return new GenericData.Array<>(schema, array);
+            case MAP:
+                final Map<String, Object> map = new HashMap<>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    map.put("key" + i, synthetic(schema.getValueType(), random));
+                }
+                return map;
+            case UNION:
+                // The last branch, usually not the "null" one.
+                return synthetic(schema.getTypes().get(schema.getTypes().size() - 1), random);
+            case FIXED:
+                final byte[] fixed = new byte[schema.getFixedSize()];
+                random.nextBytes(fixed);
+                return new GenericData.Fixed(schema, fixed);
+            case STRING:
+                return "warm-up " + random.nextInt(1000);
+            case BYTES:
+                final byte[] bytes = new byte[random.nextInt(32)];
+                random.nextBytes(bytes);
+                return ByteBuffer.wrap(bytes);
+            case INT:
+                return random.nextInt();
+            case LONG:
+                return random.nextLong();
+            case FLOAT:
+                return random.nextFloat();
+            case DOUBLE:
+                return random.nextDouble();
+            case BOOLEAN:
+                return random.nextBoolean();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Looks up the latest version of an artifact once, then serves its global id from memory.
+     */
+    private static final class LatestIdStrategy<T> extends FindLatestIdStrategy<T> {
+
+        private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+        @Override
+        public long findId(RegistryService service, String artifactId, ArtifactType artifactType, T schema) {
+            return ids.computeIfAbsent(artifactId, id -> super.findId(service, id, artifactType, schema));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(Properties props, String key, Class<?> type) {
+        final Object value = props.get(key);
+        try {
+            return (T) (value instanceof Class ? Utils.newInstance((Class<?>) value) : Utils.newInstance(value.toString(), type));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value, e);
+        }
+    }
+
+    private static Map<String, Object> toMap(Properties props) {
+        final Map<String, Object> configs = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            configs.put(entry.getKey().toString(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(configs);
+    }
+
+}
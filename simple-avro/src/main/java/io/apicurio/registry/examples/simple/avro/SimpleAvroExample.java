@@ -17,27 +17,39 @@
 package io.apicurio.registry.examples.simple.avro;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import io.apicurio.registry.examples.kafka.EndToEndLatency;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
 import io.apicurio.registry.utils.serde.AvroKafkaDeserializer;
 import io.apicurio.registry.utils.serde.AvroKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
 import io.apicurio.registry.utils.serde.strategy.GetOrCreateIdStrategy;
 import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
 
@@ -50,6 +62,8 @@ import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
  *   <li>Configuring a Kafka Deserializer for use with Apicurio Registry</li>
  *   <li>Auto-register the Avro schema in the registry (registered by the producer)</li>
  *   <li>Data sent as a simple GenericRecord, no java beans needed</li>
+ *   <li>Measuring the end-to-end latency of the messages with the "--latency [count]" argument</li>
+ *   <li>Warming up the serializer and deserializer before the first real record (see {@link SerdeWarmup})</li>
  * </ol>
  * 
  * Pre-requisites:
@@ -65,37 +79,33 @@ public class SimpleAvroExample {
     
     private static final String REGISTRY_URL = "http://localhost:8080/api";
     private static final String SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = SimpleAvroExample.class.getSimpleName();
-    private static final String SUBJECT_NAME = "Greeting";
-    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
+    static final String TOPIC_NAME = SimpleAvroExample.class.getSimpleName();
+    static final String SUBJECT_NAME = "Greeting";
+    static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Greeting\",\"fields\":[{\"name\":\"Message\",\"type\":\"string\"},{\"name\":\"Time\",\"type\":\"long\"}]}";
 
     
     public static final void main(String [] args) throws Exception {
         System.out.println("Starting example " + SimpleAvroExample.class.getSimpleName());
+        if (args.length > 0 && args[0].equals("--latency")) {
+            // Latency-tracking mode: consume the topic (until stopped, or the given number of messages), reporting
+            // the end-to-end latency every 10 seconds.
+            try (KafkaConsumer<Long, GenericRecord> consumer = createKafkaConsumer();
+                 OffsetCommitManager commits = new OffsetCommitManager(consumer);
+                 EndToEndLatency latency = new EndToEndLatency(10, TimeUnit.SECONDS)) {
+                consumer.subscribe(Collections.singletonList(TOPIC_NAME), commits);
+                trackLatency(consumer, commits, args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE, latency);
+            }
+            System.exit(0);
+        }
         String topicName = TOPIC_NAME;
         String subjectName = SUBJECT_NAME;
 
         // Create the producer.
         Producer<Object, Object> producer = createKafkaProducer();
         // Produce 5 messages.
-        int producedMessages = 0;
         try {
-            Schema schema = new Schema.Parser().parse(SCHEMA);
             System.out.println("Producing (5) messages.");
-            for (int idx = 0; idx < 5; idx++) {
-                // Use the schema to create a record
-                GenericRecord record = new GenericData.Record(schema);
-                Date now = new Date();
-                String message = "Hello (" + producedMessages++ + ")!";
-                record.put("Message", message);
-                record.put("Time", now.getTime());
-                
-                // Send/produce the message on the Kafka Producer
-                ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, record);
-                producer.send(producedRecord);
-                
-                Thread.sleep(100);
-            }
+            produceMessages(producer, topicName, subjectName, 5, 100);
             System.out.println("Messages successfully produced.");
         } finally {
             System.out.println("Closing the producer.");
@@ -109,24 +119,15 @@ public class SimpleAvroExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
         // Consume the 5 messages.
         try {
-            int messageCount = 0;
             System.out.println("Consuming (5) messages.");
-            while (messageCount < 5) {
-                final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
-                messageCount += records.count();
-                if (records.count() == 0) {
-                    // Do nothing - no messages waiting.
-                    System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
-                    GenericRecord value = record.value();
-                    System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
-                });
-            }
+            consumeMessages(consumer, commits, 5, true);
         } finally {
+            commits.close();
             consumer.close();
         }
         
@@ -134,10 +135,137 @@ public class SimpleAvroExample {
         System.exit(0);
     }
 
+    /**
+     * Produces the given number of messages, pausing between each of them.  The producer can be a
+     * Kafka producer or a mock one (see the {@code SimpleAvroThroughputCheck}).
+     */
+    static void produceMessages(Producer<Object, Object> producer, String topicName, String subjectName, int count, long pauseMillis) throws InterruptedException {
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+        for (int idx = 0; idx < count; idx++) {
+            // Use the schema to create a record
+            GenericRecord record = new GenericData.Record(schema);
+            Date now = new Date();
+            String message = "Hello (" + idx + ")!";
+            record.put("Message", message);
+            record.put("Time", now.getTime());
+            
+            // Send/produce the message on the Kafka Producer
+            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, record);
+            producer.send(producedRecord);
+            
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * Produces the given number of messages packed into envelopes of (up to) the given number of records, see the
+     * {@link AvroEnvelopeSerializer}.  The producer must be configured with {@link #createEnvelopeProducerConfig}.
+     */
+    static void produceEnvelopes(Producer<Object, Object> producer, String topicName, String subjectName, int count, int envelopeSize) {
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+        List<GenericRecord> envelope = new ArrayList<>(envelopeSize);
+        for (int idx = 0; idx < count; idx++) {
+            GenericRecord record = new GenericData.Record(schema);
+            record.put("Message", "Hello (" + idx + ")!");
+            record.put("Time", System.currentTimeMillis());
+            envelope.add(record);
+            if (envelope.size() == envelopeSize || idx == count - 1) {
+                producer.send(new ProducerRecord<>(topicName, subjectName, envelope));
+                envelope = new ArrayList<>(envelopeSize);
+            }
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, printing them if asked to, and commits their offsets once processed.
+     */
+    static void consumeMessages(Consumer<Long, GenericRecord> consumer, OffsetCommitManager commits, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            messageCount += records.count();
+            if (print && records.count() == 0) {
+                // Do nothing - no messages waiting.
+                System.out.println("No messages waiting...");
+            }
+            for (ConsumerRecord<Long, GenericRecord> record : records) {
+                if (print) {
+                    GenericRecord value = record.value();
+                    System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
+                }
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
+    /**
+     * Consumes envelopes until the given number of records is reached, printing them if asked to.  The consumer
+     * must be configured with {@link #createEnvelopeConsumerConfig}.  The offset of an envelope is committed once
+     * all its records are processed.
+     */
+    static void consumeEnvelopes(Consumer<Long, AvroEnvelope> consumer, OffsetCommitManager commits, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, AvroEnvelope> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            for (ConsumerRecord<Long, AvroEnvelope> record : records) {
+                AvroEnvelope envelope = record.value();
+                messageCount += envelope.size();
+                // The records are only decoded here, while iterating.
+                for (GenericRecord value : envelope) {
+                    if (print) {
+                        System.out.println("Consumed a message: " + value.get("Message") + " @ " + new Date((long) value.get("Time")));
+                    }
+                }
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, recording their end-to-end latency from their "Time" field.
+     */
+    static void trackLatency(Consumer<Long, GenericRecord> consumer, OffsetCommitManager commits, long count, EndToEndLatency latency) {
+        long messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, GenericRecord> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            for (ConsumerRecord<Long, GenericRecord> record : records) {
+                GenericRecord value = record.value();
+                latency.record(record, value.getSchema().getFullName(), (long) value.get("Time"));
+                commits.completed(record);
+                messageCount++;
+            }
+            commits.maybeCommit();
+        }
+    }
+
     /**
      * Creates the Kafka producer.
      */
     private static Producer<Object, Object> createKafkaProducer() {
+        Properties props = createProducerConfig(REGISTRY_URL);
+        // Resolve the schema id once, so that the warm-up (and the sends after it) do not look it up on every record
+        props.put(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CachedSchemaIdStrategy.class.getName());
+        // Warm up the value serializer (schema registration, Avro writer, JIT) before the first real send
+        Serializer<Object> valueSerializer = SerdeWarmup.newSerializer(props, false);
+        long warmUpNanos = new SerdeWarmup(TOPIC_NAME).warmUp(valueSerializer, null, new Schema.Parser().parse(SCHEMA));
+        System.out.println("Serializer warmed up in " + TimeUnit.NANOSECONDS.toMillis(warmUpNanos) + " ms.");
+
+        // Create the Kafka producer, with the warmed-up serializer
+        Producer<Object, Object> producer = new KafkaProducer<>(props, SerdeWarmup.newSerializer(props, true), valueSerializer);
+        return producer;
+    }
+
+    /**
+     * Creates the Kafka producer configuration, for the given registry.
+     */
+    static Properties createProducerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure kafka settings
@@ -149,42 +277,78 @@ public class SimpleAvroExample {
         props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroKafkaSerializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, SimpleTopicIdStrategy.class.getName());
         // Get an existing schema or auto-register if not found
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, GetOrCreateIdStrategy.class.getName());
 
-        // Create the Kafka producer
-        Producer<Object, Object> producer = new KafkaProducer<>(props);
-        return producer;
+        return props;
+    }
+
+    /**
+     * Creates the configuration of a Kafka producer sending envelopes of records, for the given registry.
+     */
+    static Properties createEnvelopeProducerConfig(String registryUrl) {
+        Properties props = createProducerConfig(registryUrl);
+        // Pack the records of a list into a single message, using the same id strategies
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroEnvelopeSerializer.class.getName());
+        return props;
     }
 
     /**
      * Creates the Kafka consumer.
      */
     private static KafkaConsumer<Long, GenericRecord> createKafkaConsumer() {
+        Properties props = createConsumerConfig(REGISTRY_URL);
+        // Warm up the value deserializer (schema lookup, Avro reader, JIT) on records serialized with the latest
+        // registered schema, the consumer never registers one
+        Deserializer<GenericRecord> valueDeserializer = SerdeWarmup.newDeserializer(props, false);
+        try (Serializer<Object> serializer = SerdeWarmup.newLookupSerializer(createProducerConfig(REGISTRY_URL))) {
+            long warmUpNanos = new SerdeWarmup(TOPIC_NAME).warmUp(serializer, valueDeserializer, new Schema.Parser().parse(SCHEMA));
+            System.out.println("Deserializer warmed up in " + TimeUnit.NANOSECONDS.toMillis(warmUpNanos) + " ms.");
+        } catch (WebApplicationException e) {
+            System.out.println("Deserializer not warmed up, no schema registered for " + TOPIC_NAME + " yet.");
+        }
+
+        // Create the Kafka Consumer, with the warmed-up deserializer
+        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(props, SerdeWarmup.newDeserializer(props, true), valueDeserializer);
+        return consumer;
+    }
+
+    /**
+     * Creates the Kafka consumer configuration, for the given registry.
+     */
+    static Properties createConsumerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         // Use the Apicurio Registry provided Kafka Deserializer for Avro
         props.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroKafkaDeserializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // No other configuration needed for the deserializer, because the globalId of the schema
         // the deserializer should use is sent as part of the payload.  So the deserializer simply
         // extracts that globalId and uses it to look up the Schema from the registry.
 
-        // Create the Kafka Consumer
-        KafkaConsumer<Long, GenericRecord> consumer = new KafkaConsumer<>(props);
-        return consumer;
+        return props;
+    }
+
+    /**
+     * Creates the configuration of a Kafka consumer reading envelopes of records, for the given registry.
+     */
+    static Properties createEnvelopeConsumerConfig(String registryUrl) {
+        Properties props = createConsumerConfig(registryUrl);
+        // Unpack the records of the envelopes lazily
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, AvroEnvelopeDeserializer.class.getName());
+        return props;
     }
 
 }
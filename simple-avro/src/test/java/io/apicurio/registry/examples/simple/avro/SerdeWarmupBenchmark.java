@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.support.EmbeddedRegistry;
+import io.apicurio.registry.examples.support.InProcessPipe;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
+
+/**
+ * Measures the latency of the first record, and of the first 100 records, of the {@link SimpleAvroExample} flows
+ * with and without the {@link SerdeWarmup}.
+ * <p>
+ * Every run is a fresh JVM (a child process using the same java and class path), since the cost being measured is
+ * the one of a cold start: class loading, schema registration and lookup, and interpreted code.  A run sends the
+ * records one at a time over an {@link InProcessPipe}, against an {@link EmbeddedRegistry} with the given latency,
+ * and waits for each to be consumed.  The warm-up itself happens before the first record and is reported apart.
+ * <p>
+ * Usage: SerdeWarmupBenchmark [runs] [registryLatencyMillis].  No Kafka broker or registry is needed.
+ */
+public class SerdeWarmupBenchmark {
+
+    private static final String RUN = "--run";
+    private static final int RECORDS = 100;
+
+    public static final void main(String [] args) throws Exception {
+        if (args.length > 0 && args[0].equals(RUN)) {
+            run(Boolean.parseBoolean(args[1]), Long.parseLong(args[2]));
+            System.exit(0);
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long registryLatencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        System.out.println("Starting benchmark " + SerdeWarmupBenchmark.class.getSimpleName() + " (" + runs + " runs, registry latency "
+                + registryLatencyMillis + " ms)");
+
+        for (boolean warmUp : new boolean[] { false, true }) {
+            long[][] results = new long[runs][];
+            for (int i = 0; i < runs; i++) {
+                results[i] = fork(warmUp, registryLatencyMillis);
+            }
+            System.out.println(String.format("%-14s first record %,8d us, first %d records %,8d us, warm-up %,6d ms (medians)",
+                    warmUp ? "With warm-up:" : "Cold:", median(results, 0), RECORDS, median(results, 1), median(results, 2)));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs one measurement in a child JVM.
+     *
+     * @return first record latency (us), first records latency (us), warm-up time (ms)
+     */
+    private static long[] fork(boolean warmUp, long registryLatencyMillis) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                SerdeWarmupBenchmark.class.getName(), RUN, String.valueOf(warmUp), String.valueOf(registryLatencyMillis)));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = null;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                result = line;
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Benchmark run failed, exit code " + process.exitValue());
+        }
+        String[] values = result.trim().split(" ");
+        return new long[] { Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]) };
+    }
+
+    private static void run(boolean warmUp, long registryLatencyMillis) throws Exception {
+        try (EmbeddedRegistry registry = new EmbeddedRegistry().latency(registryLatencyMillis, 0, TimeUnit.MILLISECONDS).start()) {
+            InProcessPipe pipe = new InProcessPipe(RECORDS);
+            Properties producerProps = SimpleAvroExample.createProducerConfig(registry.getUrl());
+            // As in the example, the schema id is resolved once, with or without warm-up
+            producerProps.put(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CachedSchemaIdStrategy.class.getName());
+            Properties consumerProps = SimpleAvroExample.createConsumerConfig(registry.getUrl());
+
+            long warmUpNanos = 0;
+            Producer<Object, Object> producer;
+            Consumer<Long, GenericRecord> consumer;
+            if (warmUp) {
+                Serializer<Object> valueSerializer = SerdeWarmup.newSerializer(producerProps, false);
+                Deserializer<GenericRecord> valueDeserializer = SerdeWarmup.newDeserializer(consumerProps, false);
+                warmUpNanos = new SerdeWarmup(SimpleAvroExample.TOPIC_NAME).warmUp(valueSerializer, valueDeserializer,
+                        new Schema.Parser().parse(SimpleAvroExample.SCHEMA));
+                producer = pipe.producer(SerdeWarmup.newSerializer(producerProps, true), valueSerializer);
+                consumer = pipe.consumer(consumerProps, SerdeWarmup.newDeserializer(consumerProps, true), valueDeserializer);
+            } else {
+                producer = pipe.producer(producerProps);
+                consumer = pipe.consumer(consumerProps);
+            }
+            OffsetCommitManager commits = new OffsetCommitManager(consumer);
+            consumer.subscribe(Collections.singletonList(SimpleAvroExample.TOPIC_NAME), commits);
+
+            long first = 0;
+            long total = 0;
+            try {
+                for (int i = 0; i < RECORDS; i++) {
+                    long start = System.nanoTime();
+                    SimpleAvroExample.produceMessages(producer, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, 1, 0);
+                    SimpleAvroExample.consumeMessages(consumer, commits, 1, false);
+                    long elapsed = System.nanoTime() - start;
+                    if (i == 0) {
+                        first = elapsed;
+                    }
+                    total += elapsed;
+                }
+            } finally {
+                producer.close();
+                commits.close();
+                consumer.close();
+            }
+            // The last line of the output is the result read by the parent.
+            System.out.println(TimeUnit.NANOSECONDS.toMicros(first) + " " + TimeUnit.NANOSECONDS.toMicros(total) + " "
+                    + TimeUnit.NANOSECONDS.toMillis(warmUpNanos));
+        }
+    }
+
+    private static long median(long[][] results, int index) {
+        long[] values = new long[results.length];
+        for (int i = 0; i < results.length; i++) {
+            values[i] = results[i][index];
+        }
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.avro;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.support.EmbeddedRegistry;
+import io.apicurio.registry.examples.support.InProcessPipe;
+import io.apicurio.registry.examples.support.ThroughputCheck;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.CachedSchemaIdStrategy;
+
+/**
+ * Offline throughput check of the {@link SimpleAvroExample}: its produce and consume flows run over an
+ * {@link InProcessPipe} against an {@link EmbeddedRegistry}, no Kafka broker or registry is needed.  The flows are
+ * run twice: one record per message, then {@value #ENVELOPE_SIZE} records per message (see the
+ * {@link AvroEnvelopeSerializer}).  The reactive pipelines of the {@link ReactivePipelineExample} are run last.
+ * The producers resolve the schema id once ({@link CachedSchemaIdStrategy}) rather than on every record, so that
+ * the check measures the serdes and not the registry round trips.
+ * <p>
+ * Usage: SimpleAvroThroughputCheck [records] [minRecordsPerSecond], exits with 1 when the throughput is below the minimum.
+ * Run by the build with the "perf" profile.
+ */
+public class SimpleAvroThroughputCheck {
+
+    private static final int ENVELOPE_SIZE = 100;
+
+    public static final void main(String [] args) throws Exception {
+        ThroughputCheck check = new ThroughputCheck(SimpleAvroExample.class.getSimpleName(), args);
+        ThroughputCheck envelopeCheck = new ThroughputCheck(SimpleAvroExample.class.getSimpleName() + " (envelopes of " + ENVELOPE_SIZE + ")", args);
+        ThroughputCheck reactiveCheck = new ThroughputCheck(ReactivePipelineExample.class.getSimpleName(), args);
+        boolean passed;
+        try (EmbeddedRegistry registry = new EmbeddedRegistry().start()) {
+            InProcessPipe pipe = new InProcessPipe(10000);
+            Producer<Object, Object> producer = pipe.producer(cachedIds(SimpleAvroExample.createProducerConfig(registry.getUrl())));
+            Consumer<Long, GenericRecord> consumer = pipe.consumer(SimpleAvroExample.createConsumerConfig(registry.getUrl()));
+            OffsetCommitManager commits = new OffsetCommitManager(consumer);
+            consumer.subscribe(Collections.singletonList(SimpleAvroExample.TOPIC_NAME), commits);
+            try {
+                passed = check.run(pipe,
+                        () -> SimpleAvroExample.produceMessages(producer, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, check.getRecords(), 0),
+                        () -> SimpleAvroExample.consumeMessages(consumer, commits, check.getRecords(), false));
+            } finally {
+                producer.close();
+                commits.close();
+                consumer.close();
+            }
+
+            InProcessPipe envelopePipe = new InProcessPipe(10000);
+            Producer<Object, Object> envelopeProducer = envelopePipe.producer(cachedIds(SimpleAvroExample.createEnvelopeProducerConfig(registry.getUrl())));
+            Consumer<Long, AvroEnvelope> envelopeConsumer = envelopePipe.consumer(SimpleAvroExample.createEnvelopeConsumerConfig(registry.getUrl()));
+            OffsetCommitManager envelopeCommits = new OffsetCommitManager(envelopeConsumer);
+            envelopeConsumer.subscribe(Collections.singletonList(SimpleAvroExample.TOPIC_NAME), envelopeCommits);
+            try {
+                passed &= envelopeCheck.run(envelopePipe,
+                        () -> SimpleAvroExample.produceEnvelopes(envelopeProducer, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, envelopeCheck.getRecords(), ENVELOPE_SIZE),
+                        () -> SimpleAvroExample.consumeEnvelopes(envelopeConsumer, envelopeCommits, envelopeCheck.getRecords(), false));
+            } finally {
+                envelopeProducer.close();
+                envelopeCommits.close();
+                envelopeConsumer.close();
+            }
+
+            InProcessPipe reactivePipe = new InProcessPipe(10000);
+            Producer<Object, Object> reactiveProducer = reactivePipe.producer(cachedIds(SimpleAvroExample.createProducerConfig(registry.getUrl())));
+            Consumer<Long, GenericRecord> reactiveConsumer = reactivePipe.consumer(SimpleAvroExample.createConsumerConfig(registry.getUrl()));
+            OffsetCommitManager reactiveCommits = new OffsetCommitManager(reactiveConsumer);
+            reactiveConsumer.subscribe(Collections.singletonList(SimpleAvroExample.TOPIC_NAME), reactiveCommits);
+            try {
+                // The consumer is closed by the pipeline.
+                passed &= reactiveCheck.run(reactivePipe,
+                        () -> ReactivePipelineExample.produceMessages(reactiveProducer, SimpleAvroExample.TOPIC_NAME, SimpleAvroExample.SUBJECT_NAME, reactiveCheck.getRecords()),
+                        () -> ReactivePipelineExample.consumeMessages(reactiveConsumer, reactiveCommits, reactiveCheck.getRecords(), false));
+            } finally {
+                reactiveProducer.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Properties cachedIds(Properties producerConfig) {
+        producerConfig.put(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CachedSchemaIdStrategy.class.getName());
+        return producerConfig;
+    }
+
+}
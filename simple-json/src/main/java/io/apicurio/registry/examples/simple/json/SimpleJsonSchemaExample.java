@@ -22,8 +22,11 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -35,6 +38,8 @@ import org.apache.kafka.common.serialization.StringSerializer;
 
 import io.apicurio.registry.client.RegistryRestClient;
 import io.apicurio.registry.client.RegistryRestClientFactory;
+import io.apicurio.registry.examples.kafka.EndToEndLatency;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
 import io.apicurio.registry.rest.beans.IfExistsType;
 import io.apicurio.registry.types.ArtifactType;
 import io.apicurio.registry.utils.serde.AbstractKafkaSerDe;
@@ -59,6 +64,7 @@ import io.apicurio.registry.utils.serde.strategy.SimpleTopicIdStrategy;
  *   <li>Configuring a Kafka Serializer for use with Apicurio Registry</li>
  *   <li>Configuring a Kafka Deserializer for use with Apicurio Registry</li>
  *   <li>Data sent as a MessageBean</li>
+ *   <li>Measuring the end-to-end latency of the messages with the "--latency [count]" argument</li>
  * </ol>
  * 
  * Pre-requisites:
@@ -74,8 +80,8 @@ public class SimpleJsonSchemaExample {
     
     private static final String REGISTRY_URL = "http://localhost:8080/api";
     private static final String SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = SimpleJsonSchemaExample.class.getSimpleName();
-    private static final String SUBJECT_NAME = "Greeting";
+    static final String TOPIC_NAME = SimpleJsonSchemaExample.class.getSimpleName();
+    static final String SUBJECT_NAME = "Greeting";
     public static final String SCHEMA = "{" +
             "    \"$id\": \"https://example.com/message.schema.json\"," + 
             "    \"$schema\": \"http://json-schema.org/draft-07/schema#\"," + 
@@ -99,32 +105,29 @@ public class SimpleJsonSchemaExample {
     
     public static final void main(String [] args) throws Exception {
         System.out.println("Starting example " + SimpleJsonSchemaExample.class.getSimpleName());
+        if (args.length > 0 && args[0].equals("--latency")) {
+            // Latency-tracking mode: consume the topic (until stopped, or the given number of messages), reporting
+            // the end-to-end latency every 10 seconds.
+            try (KafkaConsumer<Long, MessageBean> consumer = createKafkaConsumer();
+                 OffsetCommitManager commits = new OffsetCommitManager(consumer);
+                 EndToEndLatency latency = new EndToEndLatency(10, TimeUnit.SECONDS)) {
+                consumer.subscribe(Collections.singletonList(TOPIC_NAME), commits);
+                trackLatency(consumer, commits, args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE, latency);
+            }
+            System.exit(0);
+        }
         String topicName = TOPIC_NAME;
         String subjectName = SUBJECT_NAME;
         
         // Register the schema with the registry (only if it is not already registered)
-        String artifactId = TOPIC_NAME; // use the topic name as the artifactId because we're going to map topic name to artifactId later on (using SimpleTopicIdStrategy in the producer config)
-        RegistryRestClient client = RegistryRestClientFactory.create(REGISTRY_URL);
-        client.createArtifact(artifactId, ArtifactType.JSON, IfExistsType.RETURN_OR_UPDATE, new ByteArrayInputStream(SCHEMA.getBytes(StandardCharsets.UTF_8)));
+        registerSchema(REGISTRY_URL);
 
         // Create the producer.
         Producer<Object, Object> producer = createKafkaProducer();
         // Produce 5 messages.
-        int producedMessages = 0;
         try {
             System.out.println("Producing (5) messages.");
-            for (int idx = 0; idx < 5; idx++) {
-                // Create the message to send
-                MessageBean message = new MessageBean();
-                message.setMessage("Hello (" + producedMessages++ + ")!");
-                message.setTime(System.currentTimeMillis());
-                
-                // Send/produce the message on the Kafka Producer
-                ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, message);
-                producer.send(producedRecord);
-                
-                Thread.sleep(100);
-            }
+            produceMessages(producer, topicName, subjectName, 5, 100);
             System.out.println("Messages successfully produced.");
         } finally {
             System.out.println("Closing the producer.");
@@ -138,24 +141,15 @@ public class SimpleJsonSchemaExample {
 
         // Subscribe to the topic
         System.out.println("Subscribing to topic " + topicName);
-        consumer.subscribe(Collections.singletonList(topicName));
+        OffsetCommitManager commits = new OffsetCommitManager(consumer);
+        consumer.subscribe(Collections.singletonList(topicName), commits);
 
         // Consume the 5 messages.
         try {
-            int messageCount = 0;
             System.out.println("Consuming (5) messages.");
-            while (messageCount < 5) {
-                final ConsumerRecords<Long, MessageBean> records = consumer.poll(Duration.ofSeconds(1));
-                messageCount += records.count();
-                if (records.count() == 0) {
-                    // Do nothing - no messages waiting.
-                    System.out.println("No messages waiting...");
-                } else records.forEach(record -> {
-                    MessageBean msg = record.value();
-                    System.out.println("Consumed a message: " + msg.getMessage() + " @ " + new Date(msg.getTime()));
-                });
-            }
+            consumeMessages(consumer, commits, 5, true);
         } finally {
+            commits.close();
             consumer.close();
         }
         
@@ -163,10 +157,91 @@ public class SimpleJsonSchemaExample {
         System.exit(0);
     }
 
+    /**
+     * Registers the schema with the given registry (only if it is not already registered).
+     */
+    static void registerSchema(String registryUrl) {
+        String artifactId = TOPIC_NAME; // use the topic name as the artifactId because we're going to map topic name to artifactId later on (using SimpleTopicIdStrategy in the producer config)
+        RegistryRestClient client = RegistryRestClientFactory.create(registryUrl);
+        client.createArtifact(artifactId, ArtifactType.JSON, IfExistsType.RETURN_OR_UPDATE, new ByteArrayInputStream(SCHEMA.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Produces the given number of messages, pausing between each of them.  The producer can be a
+     * Kafka producer or a mock one (see the {@code SimpleJsonSchemaThroughputCheck}).
+     */
+    static void produceMessages(Producer<Object, Object> producer, String topicName, String subjectName, int count, long pauseMillis) throws InterruptedException {
+        for (int idx = 0; idx < count; idx++) {
+            // Create the message to send
+            MessageBean message = new MessageBean();
+            message.setMessage("Hello (" + idx + ")!");
+            message.setTime(System.currentTimeMillis());
+            
+            // Send/produce the message on the Kafka Producer
+            ProducerRecord<Object, Object> producedRecord = new ProducerRecord<>(topicName, subjectName, message);
+            producer.send(producedRecord);
+            
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, printing them if asked to, and commits their offsets once processed.
+     */
+    static void consumeMessages(Consumer<Long, MessageBean> consumer, OffsetCommitManager commits, int count, boolean print) {
+        int messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, MessageBean> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            messageCount += records.count();
+            if (print && records.count() == 0) {
+                // Do nothing - no messages waiting.
+                System.out.println("No messages waiting...");
+            }
+            for (ConsumerRecord<Long, MessageBean> record : records) {
+                if (print) {
+                    MessageBean msg = record.value();
+                    System.out.println("Consumed a message: " + msg.getMessage() + " @ " + new Date(msg.getTime()));
+                }
+                commits.completed(record);
+            }
+            commits.maybeCommit();
+        }
+    }
+
+    /**
+     * Consumes the given number of messages, recording their end-to-end latency from their "Time" field.
+     */
+    static void trackLatency(Consumer<Long, MessageBean> consumer, OffsetCommitManager commits, long count, EndToEndLatency latency) {
+        long messageCount = 0;
+        while (messageCount < count) {
+            final ConsumerRecords<Long, MessageBean> records = consumer.poll(Duration.ofSeconds(1));
+            commits.track(records);
+            for (ConsumerRecord<Long, MessageBean> record : records) {
+                MessageBean value = record.value();
+                latency.record(record, SUBJECT_NAME, value.getTime());
+                commits.completed(record);
+                messageCount++;
+            }
+            commits.maybeCommit();
+        }
+    }
+
     /**
      * Creates the Kafka producer.
      */
     private static Producer<Object, Object> createKafkaProducer() {
+        // Create the Kafka producer
+        Producer<Object, Object> producer = new KafkaProducer<>(createProducerConfig(REGISTRY_URL));
+        return producer;
+    }
+
+    /**
+     * Creates the Kafka producer configuration, for the given registry.
+     */
+    static Properties createProducerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure kafka settings
@@ -178,7 +253,7 @@ public class SimpleJsonSchemaExample {
         props.putIfAbsent(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSchemaKafkaSerializer.class.getName());
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // Map the topic name to the artifactId in the registry
         props.putIfAbsent(AbstractKafkaSerializer.REGISTRY_ARTIFACT_ID_STRATEGY_CONFIG_PARAM, SimpleTopicIdStrategy.class.getName());
         // Use the schema registered in step 1
@@ -186,22 +261,29 @@ public class SimpleJsonSchemaExample {
         // Enable validation in the serializer to ensure that the data we send is valid against the schema.
         props.putIfAbsent(JsonSchemaSerDeConstants.REGISTRY_JSON_SCHEMA_VALIDATION_ENABLED, Boolean.TRUE);
 
-        // Create the Kafka producer
-        Producer<Object, Object> producer = new KafkaProducer<>(props);
-        return producer;
+        return props;
     }
 
     /**
      * Creates the Kafka consumer.
      */
     private static KafkaConsumer<Long, MessageBean> createKafkaConsumer() {
+        // Create the Kafka Consumer
+        KafkaConsumer<Long, MessageBean> consumer = new KafkaConsumer<>(createConsumerConfig(REGISTRY_URL));
+        return consumer;
+    }
+
+    /**
+     * Creates the Kafka consumer configuration, for the given registry.
+     */
+    static Properties createConsumerConfig(String registryUrl) {
         Properties props = new Properties();
 
         // Configure Kafka
         props.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SERVERS);
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "Consumer-" + TOPIC_NAME);
-        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.putIfAbsent(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        // The offsets are committed once the messages are processed, see the OffsetCommitManager
+        props.putIfAbsent(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         // Use the Apicurio Registry provided Kafka Deserializer for JSON Schema
@@ -210,14 +292,12 @@ public class SimpleJsonSchemaExample {
         props.putIfAbsent(JsonSchemaSerDeConstants.REGISTRY_JSON_SCHEMA_VALIDATION_ENABLED, Boolean.TRUE);
 
         // Configure Service Registry location
-        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, REGISTRY_URL);
+        props.putIfAbsent(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registryUrl);
         // No other configuration needed for the deserializer, because the globalId of the schema
         // the deserializer should use is sent as part of the payload.  So the deserializer simply
         // extracts that globalId and uses it to look up the Schema from the registry.
 
-        // Create the Kafka Consumer
-        KafkaConsumer<Long, MessageBean> consumer = new KafkaConsumer<>(props);
-        return consumer;
+        return props;
     }
 
 }
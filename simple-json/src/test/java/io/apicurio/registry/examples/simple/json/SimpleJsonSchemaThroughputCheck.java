@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.simple.json;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+
+import io.apicurio.registry.client.RegistryService;
+import io.apicurio.registry.examples.kafka.OffsetCommitManager;
+import io.apicurio.registry.examples.support.EmbeddedRegistry;
+import io.apicurio.registry.examples.support.InProcessPipe;
+import io.apicurio.registry.examples.support.ThroughputCheck;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.utils.serde.strategy.FindLatestIdStrategy;
+
+/**
+ * Offline throughput check of the {@link SimpleJsonSchemaExample}: its produce and consume flows run over an
+ * {@link InProcessPipe} against an {@link EmbeddedRegistry}, no Kafka broker or registry is needed.  The producer
+ * looks up the latest schema id once per artifact ({@link CachedLatestIdStrategy}) rather than on every record.
+ * <p>
+ * Usage: SimpleJsonSchemaThroughputCheck [records] [minRecordsPerSecond], exits with 1 when the throughput is below the minimum.
+ * Run by the build with the "perf" profile.
+ */
+public class SimpleJsonSchemaThroughputCheck {
+
+    public static final void main(String [] args) throws Exception {
+        ThroughputCheck check = new ThroughputCheck(SimpleJsonSchemaExample.class.getSimpleName(), args);
+        boolean passed;
+        try (EmbeddedRegistry registry = new EmbeddedRegistry().start()) {
+            SimpleJsonSchemaExample.registerSchema(registry.getUrl());
+            InProcessPipe pipe = new InProcessPipe(10000);
+            Properties producerConfig = SimpleJsonSchemaExample.createProducerConfig(registry.getUrl());
+            producerConfig.put(AbstractKafkaSerializer.REGISTRY_GLOBAL_ID_STRATEGY_CONFIG_PARAM, CachedLatestIdStrategy.class.getName());
+            Producer<Object, Object> producer = pipe.producer(producerConfig);
+            Consumer<Long, MessageBean> consumer = pipe.consumer(SimpleJsonSchemaExample.createConsumerConfig(registry.getUrl()));
+            OffsetCommitManager commits = new OffsetCommitManager(consumer);
+            consumer.subscribe(Collections.singletonList(SimpleJsonSchemaExample.TOPIC_NAME), commits);
+            try {
+                passed = check.run(pipe,
+                        () -> SimpleJsonSchemaExample.produceMessages(producer, SimpleJsonSchemaExample.TOPIC_NAME, SimpleJsonSchemaExample.SUBJECT_NAME, check.getRecords(), 0),
+                        () -> SimpleJsonSchemaExample.consumeMessages(consumer, commits, check.getRecords(), false));
+            } finally {
+                producer.close();
+                commits.close();
+                consumer.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * The {@link FindLatestIdStrategy} of the example, looking up the latest version of an artifact only once: the
+     * JSON serializer hands the records rather than a schema to the strategy, so they cannot be cached by schema.
+     */
+    public static class CachedLatestIdStrategy<T> extends FindLatestIdStrategy<T> {
+
+        private final Map<String, Long> globalIds = new ConcurrentHashMap<>();
+
+        @Override
+        public long findId(RegistryService service, String artifactId, ArtifactType artifactType, T schema) {
+            return globalIds.computeIfAbsent(artifactId, id -> super.findId(service, id, artifactType, schema));
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-memory artifacts of the {@link EmbeddedRegistry}.  Every version gets a new global id, which is also
+ * the schema id of the Confluent compatible API.
+ */
+final class ArtifactStore {
+
+    /**
+     * An immutable artifact version.
+     */
+    static final class Version {
+
+        final String artifactId;
+        final String type;
+        final int version;
+        final long globalId;
+        final byte[] content;
+        final long createdOn;
+
+        private Version(String artifactId, String type, int version, long globalId, byte[] content) {
+            this.artifactId = artifactId;
+            this.type = type;
+            this.version = version;
+            this.globalId = globalId;
+            this.content = content;
+            this.createdOn = System.currentTimeMillis();
+        }
+
+        String contentAsString() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+
+        boolean sameContent(byte[] other) {
+            return contentAsString().trim().equals(new String(other, StandardCharsets.UTF_8).trim());
+        }
+    }
+
+    /**
+     * Error answered by the registry, with the name of the exception the registry clients map it to.
+     */
+    static final class RegistryError extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String name;
+        final int confluentCode;
+
+        RegistryError(int status, String name, int confluentCode, String message) {
+            super(message);
+            this.status = status;
+            this.name = name;
+            this.confluentCode = confluentCode;
+        }
+    }
+
+    private final Map<String, List<Version>> artifacts = new LinkedHashMap<>();
+    private final Map<Long, Version> byGlobalId = new HashMap<>();
+    private long nextGlobalId = 1;
+
+    /**
+     * Creates an artifact, the {@code ifExists} behaviors are the ones of the registry API
+     * (FAIL, UPDATE, RETURN and RETURN_OR_UPDATE).
+     */
+    synchronized Version create(String artifactId, String type, byte[] content, String ifExists) throws RegistryError {
+        final List<Version> versions = artifacts.get(artifactId);
+        if (versions == null) {
+            return addVersion(artifactId, type, content);
+        }
+        final Version latest = versions.get(versions.size() - 1);
+        switch (ifExists == null ? "FAIL" : ifExists) {
+            case "UPDATE":
+                return addVersion(artifactId, type, content);
+            case "RETURN":
+                return latest;
+            case "RETURN_OR_UPDATE":
+                return latest.sameContent(content) ? latest : addVersion(artifactId, type, content);
+            default:
+                throw new RegistryError(409, "ArtifactAlreadyExistsException", 409, "An artifact with ID '" + artifactId + "' already exists.");
+        }
+    }
+
+    /**
+     * Adds a version to an artifact, creating it if needed.
+     */
+    synchronized Version addVersion(String artifactId, String type, byte[] content) {
+        final List<Version> versions = artifacts.computeIfAbsent(artifactId, id -> new ArrayList<>());
+        final String versionType = type != null ? type : versions.isEmpty() ? detectType(content) : versions.get(0).type;
+        final Version version = new Version(artifactId, versionType, versions.size() + 1, nextGlobalId++, content);
+        versions.add(version);
+        byGlobalId.put(version.globalId, version);
+        return version;
+    }
+
+    synchronized Version latest(String artifactId) throws RegistryError {
+        final List<Version> versions = versions(artifactId);
+        return versions.get(versions.size() - 1);
+    }
+
+    synchronized Version version(String artifactId, int version) throws RegistryError {
+        final List<Version> versions = versions(artifactId);
+        if (version < 1 || version > versions.size()) {
+            throw new RegistryError(404, "VersionNotFoundException", 40402, "No version '" + version + "' found for artifact with ID '" + artifactId + "'.");
+        }
+        return versions.get(version - 1);
+    }
+
+    synchronized Version byGlobalId(long globalId) throws RegistryError {
+        final Version version = byGlobalId.get(globalId);
+        if (version == null) {
+            throw new RegistryError(404, "ArtifactNotFoundException", 40403, "No artifact with global ID '" + globalId + "' was found.");
+        }
+        return version;
+    }
+
+    /**
+     * @return the latest version of the artifact with the given content
+     */
+    synchronized Version byContent(String artifactId, byte[] content) throws RegistryError {
+        final List<Version> versions = versions(artifactId);
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            if (versions.get(i).sameContent(content)) {
+                return versions.get(i);
+            }
+        }
+        throw new RegistryError(404, "ArtifactNotFoundException", 40403, "No version of artifact '" + artifactId + "' has the given content.");
+    }
+
+    synchronized List<Version> versions(String artifactId) throws RegistryError {
+        final List<Version> versions = artifacts.get(artifactId);
+        if (versions == null) {
+            throw new RegistryError(404, "ArtifactNotFoundException", 40401, "No artifact with ID '" + artifactId + "' was found.");
+        }
+        return new ArrayList<>(versions);
+    }
+
+    synchronized List<String> ids() {
+        return new ArrayList<>(artifacts.keySet());
+    }
+
+    synchronized List<Version> delete(String artifactId) throws RegistryError {
+        final List<Version> versions = versions(artifactId);
+        artifacts.remove(artifactId);
+        for (Version version : versions) {
+            byGlobalId.remove(version.globalId);
+        }
+        return versions;
+    }
+
+    synchronized void clear() {
+        artifacts.clear();
+        byGlobalId.clear();
+    }
+
+    private static String detectType(byte[] content) {
+        final String text = new String(content, StandardCharsets.UTF_8);
+        if (text.contains("\"$schema\"")) {
+            return "JSON";
+        }
+        if (text.contains("syntax") && text.contains("message")) {
+            return "PROTOBUF";
+        }
+        return "AVRO";
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.examples.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.apicurio.registry.examples.support.ArtifactStore.RegistryError;
+import io.apicurio.registry.examples.support.ArtifactStore.Version;
+
+/**
+ * An in-process, in-memory stand-in for Apicurio Registry, so that the examples can be run and measured without
+ * a registry.
+ * <p>
+ * It implements the artifact endpoints used by the registry clients and serdes of the examples
+ * ({@code /api/artifacts}, {@code /api/ids}) and the subject and schema endpoints of the Confluent compatible API
+ * ({@code /api/ccompat}).  Latency, jitter and errors can be injected (and changed while running); they are
+ * derived from a seed and the request sequence number, so that a run can be repeated exactly.
+ * <pre>
+ * try (EmbeddedRegistry registry = new EmbeddedRegistry().latency(2, 1, TimeUnit.MILLISECONDS).start()) {
+ *     props.put(AbstractKafkaSerDe.REGISTRY_URL_CONFIG_PARAM, registry.getUrl());
+ *     ...
+ * }
+ * </pre>
+ */
+public class EmbeddedRegistry implements AutoCloseable {
+
+    private static final String JSON = "application/json";
+    private static final String CCOMPAT_JSON = "application/vnd.schemaregistry.v1+json";
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ArtifactStore store = new ArtifactStore();
+
+    private int port;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double errorRate;
+    private volatile long seed = 42;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    /**
+     * Runs a stand-alone registry, e.g. on the port the examples expect.
+     * <p>
+     * Usage: EmbeddedRegistry [port] [latencyMillis] [errorRate]
+     */
+    public static void main(String[] args) throws Exception {
+        EmbeddedRegistry registry = new EmbeddedRegistry()
+                .port(args.length > 0 ? Integer.parseInt(args[0]) : 8080)
+                .latency(args.length > 1 ? Long.parseLong(args[1]) : 0, 0, TimeUnit.MILLISECONDS)
+                .errorRate(args.length > 2 ? Double.parseDouble(args[2]) : 0)
+                .start();
+        System.out.println("Embedded registry running on " + registry.getUrl());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * @param port port to listen to, 0 (the default) to pick a free one
+     */
+    public EmbeddedRegistry port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Delays every request by the given latency plus a random jitter between 0 and {@code jitter}.
+     */
+    public EmbeddedRegistry latency(long latency, long jitter, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+        this.jitterNanos = unit.toNanos(jitter);
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of the requests with a 503 error.
+     */
+    public EmbeddedRegistry errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Seed of the injected jitter and errors.
+     */
+    public EmbeddedRegistry seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Starts the server.
+     * <p>
+     * The JDK http server does not set TCP_NODELAY by default, so every response waits for the delayed ACK of the
+     * client (about 40 ms), which would dwarf any injected latency.  It is enabled here unless configured otherwise;
+     * the server reads the property once per JVM, so it has no effect if another http server was started before.
+     */
+    public EmbeddedRegistry start() throws IOException {
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        final AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "embedded-registry-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return the url to configure in the registry clients and serdes, e.g. http://localhost:8080/api
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/api";
+    }
+
+    /**
+     * @return the url of the Confluent compatible API, for the Confluent serdes
+     */
+    public String getCcompatUrl() {
+        return getUrl() + "/ccompat";
+    }
+
+    /**
+     * @return number of requests received
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of requests failed on purpose
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Deletes all the artifacts.
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (injectFault(requests.getAndIncrement())) {
+                injectedErrors.incrementAndGet();
+                throw new RegistryError(503, "ServiceUnavailableException", 50003, "Injected error");
+            }
+            final List<String> path = segments(exchange);
+            if (!path.isEmpty() && path.get(0).equals("ccompat")) {
+                handleCcompat(exchange, path.subList(1, path.size()));
+            } else {
+                handleArtifacts(exchange, path);
+            }
+        } catch (RegistryError e) {
+            final boolean ccompat = exchange.getRequestURI().getPath().startsWith("/api/ccompat");
+            final Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error_code", ccompat ? e.confluentCode : e.status);
+            error.put("message", e.getMessage());
+            if (!ccompat) {
+                error.put("name", e.name);
+            }
+            send(exchange, e.status, ccompat ? CCOMPAT_JSON : JSON, mapper.writeValueAsBytes(error), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            final Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error_code", 500);
+            error.put("message", String.valueOf(e.getMessage()));
+            send(exchange, 500, JSON, mapper.writeValueAsBytes(error), null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sleeps the injected latency, returns true if the request must fail.
+     */
+    private boolean injectFault(long sequence) throws InterruptedException {
+        final long random = mix(seed + sequence);
+        final long jitter = jitterNanos;
+        final long delay = latencyNanos + (jitter > 0 ? Math.floorMod(random, jitter + 1) : 0);
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        final double rate = errorRate;
+        return rate > 0 && (mix(random) >>> 11) * 0x1.0p-53 < rate;
+    }
+
+    /**
+     * SplitMix64 finalizer, turns a seed into a well distributed random value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private void handleArtifacts(HttpExchange exchange, List<String> path) throws IOException, RegistryError {
+        final String method = exchange.getRequestMethod();
+        final int size = path.size();
+
+        if (size == 1 && path.get(0).equals("artifacts")) {
+            if (method.equals("GET")) {
+                sendJson(exchange, 200, store.ids());
+                return;
+            }
+            if (method.equals("POST")) {
+                String artifactId = exchange.getRequestHeaders().getFirst("X-Registry-ArtifactId");
+                if (artifactId == null) {
+                    artifactId = UUID.randomUUID().toString();
+                }
+                final String type = exchange.getRequestHeaders().getFirst("X-Registry-ArtifactType");
+                final Version version = store.create(artifactId, type, body(exchange), query(exchange, "ifExists"));
+                sendJson(exchange, 200, metaData(version));
+                return;
+            }
+        } else if (size >= 2 && path.get(0).equals("artifacts")) {
+            final String artifactId = path.get(1);
+            if (size == 2) {
+                switch (method) {
+                    case "GET":
+                        sendContent(exchange, store.latest(artifactId));
+                        return;
+                    case "PUT":
+                        sendJson(exchange, 200, metaData(store.addVersion(artifactId, exchange.getRequestHeaders().getFirst("X-Registry-ArtifactType"), body(exchange))));
+                        return;
+                    case "DELETE":
+                        store.delete(artifactId);
+                        send(exchange, 204, null, null, null);
+                        return;
+                }
+            } else if (size == 3 && path.get(2).equals("meta")) {
+                if (method.equals("GET")) {
+                    sendJson(exchange, 200, metaData(store.latest(artifactId)));
+                    return;
+                }
+                if (method.equals("POST")) {
+                    sendJson(exchange, 200, metaData(store.byContent(artifactId, body(exchange))));
+                    return;
+                }
+            } else if (size == 3 && path.get(2).equals("versions")) {
+                if (method.equals("GET")) {
+                    final List<Integer> versions = new ArrayList<>();
+                    for (Version version : store.versions(artifactId)) {
+                        versions.add(version.version);
+                    }
+                    sendJson(exchange, 200, versions);
+                    return;
+                }
+                if (method.equals("POST")) {
+                    sendJson(exchange, 200, metaData(store.addVersion(artifactId, exchange.getRequestHeaders().getFirst("X-Registry-ArtifactType"), body(exchange))));
+                    return;
+                }
+            } else if (size >= 4 && path.get(2).equals("versions") && method.equals("GET")) {
+                final Version version = store.version(artifactId, parseVersion(path.get(3)));
+                if (size == 4) {
+                    sendContent(exchange, version);
+                    return;
+                }
+                if (size == 5 && path.get(4).equals("meta")) {
+                    sendJson(exchange, 200, metaData(version));
+                    return;
+                }
+            }
+        } else if (size >= 2 && path.get(0).equals("ids") && method.equals("GET")) {
+            final Version version = store.byGlobalId(parseId(path.get(1)));
+            if (size == 2) {
+                sendContent(exchange, version);
+                return;
+            }
+            if (size == 3 && path.get(2).equals("meta")) {
+                sendJson(exchange, 200, metaData(version));
+                return;
+            }
+        }
+        throw new RegistryError(404, "NotFoundException", 404, "No endpoint for " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    private void handleCcompat(HttpExchange exchange, List<String> path) throws IOException, RegistryError {
+        final String method = exchange.getRequestMethod();
+        final int size = path.size();
+
+        if (size == 1 && path.get(0).equals("subjects") && method.equals("GET")) {
+            sendCcompat(exchange, store.ids());
+            return;
+        }
+        if (size >= 2 && path.get(0).equals("subjects")) {
+            final String subject = path.get(1);
+            if (size == 2 && method.equals("POST")) {
+                // Lookup of a schema under a subject.
+                sendCcompat(exchange, schema(store.byContent(subject, schemaOf(exchange))));
+                return;
+            }
+            if (size == 2 && method.equals("DELETE")) {
+                final List<Integer> versions = new ArrayList<>();
+                for (Version version : store.delete(subject)) {
+                    versions.add(version.version);
+                }
+                sendCcompat(exchange, versions);
+                return;
+            }
+            if (size == 3 && path.get(2).equals("versions")) {
+                if (method.equals("POST")) {
+                    final Version version = store.create(subject, "AVRO", schemaOf(exchange), "RETURN_OR_UPDATE");
+                    final Map<String, Object> id = new LinkedHashMap<>();
+                    id.put("id", version.globalId);
+                    sendCcompat(exchange, id);
+                    return;
+                }
+                if (method.equals("GET")) {
+                    final List<Integer> versions = new ArrayList<>();
+                    for (Version version : store.versions(subject)) {
+                        versions.add(version.version);
+                    }
+                    sendCcompat(exchange, versions);
+                    return;
+                }
+            }
+            if (size == 4 && path.get(2).equals("versions") && method.equals("GET")) {
+                final String version = path.get(3);
+                sendCcompat(exchange, schema(version.equals("latest") ? store.latest(subject) : store.version(subject, parseVersion(version))));
+                return;
+            }
+        }
+        if (size == 3 && path.get(0).equals("schemas") && path.get(1).equals("ids") && method.equals("GET")) {
+            final Map<String, Object> schema = new LinkedHashMap<>();
+            schema.put("schema", store.byGlobalId(parseId(path.get(2))).contentAsString());
+            sendCcompat(exchange, schema);
+            return;
+        }
+        throw new RegistryError(404, "NotFoundException", 404, "No endpoint for " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    private static Map<String, Object> metaData(Version version) {
+        final Map<String, Object> metaData = new LinkedHashMap<>();
+        metaData.put("id", version.artifactId);
+        metaData.put("type", version.type);
+        metaData.put("version", version.version);
+        metaData.put("globalId", version.globalId);
+        metaData.put("createdOn", version.createdOn);
+        metaData.put("modifiedOn", version.createdOn);
+        metaData.put("state", "ENABLED");
+        return metaData;
+    }
+
+    private static Map<String, Object> schema(Version version) {
+        final Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("subject", version.artifactId);
+        schema.put("version", version.version);
+        schema.put("id", version.globalId);
+        schema.put("schema", version.contentAsString());
+        return schema;
+    }
+
+    private byte[] schemaOf(HttpExchange exchange) throws IOException, RegistryError {
+        final JsonNode schema = mapper.readTree(body(exchange)).get("schema");
+        if (schema == null) {
+            throw new RegistryError(422, "InvalidSchemaException", 42201, "Missing schema");
+        }
+        return schema.asText().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void sendContent(HttpExchange exchange, Version version) throws IOException {
+        // A version never changes, its global id is a strong validator.
+        final String etag = "\"" + version.globalId + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            send(exchange, 304, null, null, etag);
+            return;
+        }
+        send(exchange, 200, version.type.equals("PROTOBUF") ? "application/x-protobuf" : JSON, version.content, etag);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object value) throws IOException {
+        send(exchange, status, JSON, mapper.writeValueAsBytes(value), null);
+    }
+
+    private void sendCcompat(HttpExchange exchange, Object value) throws IOException {
+        send(exchange, 200, CCOMPAT_JSON, mapper.writeValueAsBytes(value), null);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body, String etag) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static List<String> segments(HttpExchange exchange) throws UnsupportedEncodingException {
+        final List<String> segments = new ArrayList<>();
+        // Skip the "/api" context.
+        for (String segment : exchange.getRequestURI().getRawPath().substring(4).split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, "UTF-8"));
+            }
+        }
+        return segments;
+    }
+
+    private static String query(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                final int equals = parameter.indexOf('=');
+                if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                    return URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int parseVersion(String version) throws RegistryError {
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            throw new RegistryError(404, "VersionNotFoundException", 40402, "Invalid version: " + version);
+        }
+    }
+
+    private static long parseId(String id) throws RegistryError {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new RegistryError(404, "ArtifactNotFoundException", 40403, "Invalid id: " + id);
+        }
+    }
+}
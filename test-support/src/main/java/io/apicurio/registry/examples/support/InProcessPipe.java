@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * An in-process stand-in for a single partition Kafka topic, so that the produce/consume flows of the examples
+ * can run without a broker.
+ * <p>
+ * The producers and consumers of the pipe are {@link org.apache.kafka.clients.producer.MockProducer} and
+ * {@link org.apache.kafka.clients.consumer.MockConsumer} subclasses created from the same configuration as the
+ * Kafka clients of the examples: records are really serialized and deserialized by the configured serdes and
+ * travel through a bounded queue, which blocks the producers when the consumers fall behind.
+ */
+public class InProcessPipe {
+
+    private final BlockingQueue<ConsumerRecord<byte[], byte[]>> queue;
+    private final AtomicLong offsets = new AtomicLong();
+    private volatile Throwable failure;
+
+    /**
+     * @param capacity max number of records in flight between the producers and the consumers
+     */
+    public InProcessPipe(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Creates a producer with the key and value serializers of the given Kafka producer configuration.
+     */
+    public <K, V> Producer<K, V> producer(Properties props) {
+        final Map<String, Object> configs = toMap(props);
+        final Serializer<K> keySerializer = newInstance(props, ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, Serializer.class);
+        final Serializer<V> valueSerializer = newInstance(props, ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, Serializer.class);
+        keySerializer.configure(configs, true);
+        valueSerializer.configure(configs, false);
+        return new PipeProducer<>(this, keySerializer, valueSerializer);
+    }
+
+    /**
+     * Creates a producer with the given, already configured, serializers (as the {@code KafkaProducer} constructor
+     * taking serializers).
+     */
+    public <K, V> Producer<K, V> producer(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new PipeProducer<>(this, keySerializer, valueSerializer);
+    }
+
+    /**
+     * Creates a consumer with the key and value deserializers of the given Kafka consumer configuration.
+     */
+    public <K, V> Consumer<K, V> consumer(Properties props) {
+        final Map<String, Object> configs = toMap(props);
+        final Deserializer<K> keyDeserializer = newInstance(props, ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, Deserializer.class);
+        final Deserializer<V> valueDeserializer = newInstance(props, ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, Deserializer.class);
+        keyDeserializer.configure(configs, true);
+        valueDeserializer.configure(configs, false);
+        return consumer(props, keyDeserializer, valueDeserializer);
+    }
+
+    /**
+     * Creates a consumer with the given, already configured, deserializers (as the {@code KafkaConsumer}
+     * constructor taking deserializers).
+     */
+    public <K, V> Consumer<K, V> consumer(Properties props, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer) {
+        final Object maxPollRecords = props.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
+        return new PipeConsumer<>(this, keyDeserializer, valueDeserializer, maxPollRecords == null ? 500 : Integer.parseInt(maxPollRecords.toString()));
+    }
+
+    /**
+     * Fails the pending and next polls of the consumers, e.g. because the producer died.
+     */
+    public void fail(Throwable failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * @return number of records sent through the pipe
+     */
+    public long getRecordCount() {
+        return offsets.get();
+    }
+
+    long put(String topic, long timestamp, byte[] key, byte[] value, Headers headers) {
+        final long offset = offsets.getAndIncrement();
+        final ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>(topic, 0, offset, timestamp, TimestampType.CREATE_TIME, null,
+                key == null ? -1 : key.length, value == null ? -1 : value.length, key, value, headers);
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while sending to the pipe", e);
+        }
+        return offset;
+    }
+
+    List<ConsumerRecord<byte[], byte[]>> poll(int maxRecords, Duration timeout) {
+        final List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+        try {
+            // Wake up regularly to notice a failed pipe.
+            final long deadline = System.nanoTime() + timeout.toNanos();
+            ConsumerRecord<byte[], byte[]> first = null;
+            while (first == null && failure == null && System.nanoTime() < deadline) {
+                first = queue.poll(Math.min(100, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) + 1), TimeUnit.MILLISECONDS);
+            }
+            if (first == null) {
+                if (failure != null) {
+                    throw new KafkaException("Pipe failed", failure);
+                }
+                return records;
+            }
+            records.add(first);
+            queue.drainTo(records, maxRecords - 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return records;
+    }
+
+    private static Map<String, Object> toMap(Properties props) {
+        final Map<String, Object> configs = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            configs.put(entry.getKey().toString(), entry.getValue());
+        }
+        return configs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(Properties props, String key, Class<?> type) {
+        final Object value = props.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing config: " + key);
+        }
+        try {
+            return (T) (value instanceof Class ? Utils.newInstance((Class<?>) value) : Utils.newInstance(value.toString(), type));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value, e);
+        }
+    }
+}
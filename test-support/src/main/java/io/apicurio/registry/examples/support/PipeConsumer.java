@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * A consumer polling the serialized records of an {@link InProcessPipe}, whatever its subscription.
+ */
+class PipeConsumer<K, V> extends MockConsumer<K, V> {
+
+    private final InProcessPipe pipe;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+    private final int maxPollRecords;
+
+    PipeConsumer(InProcessPipe pipe, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer, int maxPollRecords) {
+        super(OffsetResetStrategy.EARLIEST);
+        this.pipe = pipe;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.maxPollRecords = maxPollRecords;
+    }
+
+    @Override
+    public synchronized ConsumerRecords<K, V> poll(Duration timeout) {
+        final List<ConsumerRecord<byte[], byte[]>> polled = pipe.poll(maxPollRecords, timeout);
+        if (polled.isEmpty()) {
+            return ConsumerRecords.empty();
+        }
+        final Map<TopicPartition, List<ConsumerRecord<K, V>>> records = new HashMap<>();
+        for (ConsumerRecord<byte[], byte[]> record : polled) {
+            final K key = keyDeserializer.deserialize(record.topic(), record.headers(), record.key());
+            final V value = valueDeserializer.deserialize(record.topic(), record.headers(), record.value());
+            records.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), tp -> new ArrayList<>())
+                    .add(new ConsumerRecord<>(record.topic(), record.partition(), record.offset(), record.timestamp(), record.timestampType(),
+                            null, record.serializedKeySize(), record.serializedValueSize(), key, value, record.headers()));
+        }
+        return new ConsumerRecords<>(records);
+    }
+
+    @Override
+    public synchronized void close() {
+        keyDeserializer.close();
+        valueDeserializer.close();
+        super.close();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * A producer sending the serialized records to an {@link InProcessPipe} instead of keeping them in its history.
+ */
+class PipeProducer<K, V> extends MockProducer<K, V> {
+
+    private final InProcessPipe pipe;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    PipeProducer(InProcessPipe pipe, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        super(true, keySerializer, valueSerializer);
+        this.pipe = pipe;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+        // The serializers can add headers (e.g. the global id), the consumer gets its own copy.
+        final RecordHeaders headers = new RecordHeaders(record.headers().toArray());
+        final byte[] key = keySerializer.serialize(record.topic(), headers, record.key());
+        final byte[] value = valueSerializer.serialize(record.topic(), headers, record.value());
+        final long timestamp = record.timestamp() == null ? System.currentTimeMillis() : record.timestamp();
+        final long offset = pipe.put(record.topic(), timestamp, key, value, headers);
+
+        final RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0), offset, 0, timestamp, null,
+                key == null ? -1 : key.length, value == null ? -1 : value.length);
+        if (callback != null) {
+            callback.onCompletion(metadata, null);
+        }
+        return CompletableFuture.completedFuture(metadata);
+    }
+
+    @Override
+    public void close() {
+        keySerializer.close();
+        valueSerializer.close();
+        super.close();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apicurio.registry.examples.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the produce and consume flows of an example over an {@link InProcessPipe} and compares the end-to-end
+ * throughput with a minimum, so that the build can fail when a change makes the serdes slower.
+ * <p>
+ * The arguments of the check mains are: [records] [minRecordsPerSecond], a minimum of 0 disables the check.
+ */
+public class ThroughputCheck {
+
+    /**
+     * A produce or consume flow.
+     */
+    public interface Flow {
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private final int records;
+    private final double minRecordsPerSecond;
+
+    public ThroughputCheck(String name, String[] args) {
+        this(name, args, 1);
+    }
+
+    /**
+     * @param multipleOf the number of records is rounded down to a multiple of this, for flows spreading the
+     *        records evenly (e.g. over several schemas)
+     */
+    public ThroughputCheck(String name, String[] args, int multipleOf) {
+        this.name = name;
+        final int requested = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        this.records = requested / multipleOf * multipleOf;
+        this.minRecordsPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+    }
+
+    /**
+     * @return number of records the flows must produce and consume
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * Runs the producer flow in the background and the consumer flow in the calling thread.  If the consumer flow
+     * fails, the producer thread (a daemon, possibly blocked on a full pipe) is interrupted.
+     *
+     * @return true if the throughput is above the minimum
+     */
+    public boolean run(InProcessPipe pipe, Flow producer, Flow consumer) throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread producerThread = new Thread(() -> {
+            try {
+                producer.run();
+            } catch (Throwable e) {
+                failure.set(e);
+                pipe.fail(e);
+            }
+        }, name + "-producer");
+        producerThread.setDaemon(true);
+
+        final long start = System.nanoTime();
+        producerThread.start();
+        try {
+            consumer.run();
+            producerThread.join();
+        } finally {
+            if (producerThread.isAlive()) {
+                producerThread.interrupt();
+                producerThread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw new IllegalStateException("Producer flow failed", failure.get());
+        }
+
+        final double recordsPerSecond = records * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        final boolean passed = recordsPerSecond >= minRecordsPerSecond;
+        System.out.println(String.format("%s: %,d records in %.2f s, %,.0f records/s (min %,.0f) %s", name, records,
+                elapsed / 1e9, recordsPerSecond, minRecordsPerSecond, passed ? "OK" : "FAILED"));
+        return passed;
+    }
+}